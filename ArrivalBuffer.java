@@ -1,5 +1,7 @@
-public class ArrivalBuffer {
-    private Parcel[] queue;
+import java.io.IOException;
+
+public class ArrivalBuffer implements ArrivalQueue {
+    private int[] queue;  // ParcelStore handles
     private int front;
     private int rear;
     private int count;
@@ -7,16 +9,15 @@ public class ArrivalBuffer {
     
     public ArrivalBuffer(int capacity) {
         this.capacity = capacity;
-        this.queue = new Parcel[capacity];
+        this.queue = new int[capacity];
         this.front = 0;
         this.rear = -1;
         this.count = 0;
     }
     
-    public void enqueue(Parcel parcel) {
+    public void enqueue(int parcel) {
         if (isFull()) {
-            System.out.println("WARNING: Queue overflow - discarding parcel " + parcel.getParcelID() + 
-                             " to " + parcel.getDestinationCity());
+            System.out.println("WARNING: Queue overflow - discarding parcel handle " + parcel);
             return;
         }
         
@@ -25,12 +26,12 @@ public class ArrivalBuffer {
         count++;
     }
     
-    public Parcel dequeue() {
+    public int dequeue() {
         if (isEmpty()) {
-            return null;
+            return ParcelStore.NONE;
         }
         
-        Parcel parcel = queue[front];
+        int parcel = queue[front];
         front = (front + 1) % capacity;
         count--;
         
@@ -42,9 +43,31 @@ public class ArrivalBuffer {
         return parcel;
     }
     
-    public Parcel peek() {
+    // Moves up to maxCount parcels into target in FIFO order with at most two array copies
+    public int dequeueBatch(int[] target, int maxCount) {
+        int moved = Math.min(Math.min(maxCount, target.length), count);
+        if (moved == 0) {
+            return 0;
+        }
+        
+        int firstPart = Math.min(moved, capacity - front);
+        System.arraycopy(queue, front, target, 0, firstPart);
+        System.arraycopy(queue, 0, target, firstPart, moved - firstPart);
+        
+        front = (front + moved) % capacity;
+        count -= moved;
+        
+        if (count == 0) {
+            front = 0;
+            rear = -1;
+        }
+        
+        return moved;
+    }
+    
+    public int peek() {
         if (isEmpty()) {
-            return null;
+            return ParcelStore.NONE;
         }
         return queue[front];
     }
@@ -65,6 +88,25 @@ public class ArrivalBuffer {
         return capacity;
     }
     
+    // The i-th oldest parcel, without removing it
+    public int get(int index) {
+        return queue[(front + index) % capacity];
+    }
+    
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(get(i));
+        }
+    }
+    
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        int parcels = in.readInt();
+        for (int i = 0; i < parcels; i++) {
+            enqueue(in.readInt());
+        }
+    }
+    
     public void printQueueStatus() {
         System.out.println("Queue Status - Front: " + front + ", Rear: " + rear + 
                           ", Count: " + count + ", Capacity: " + capacity);
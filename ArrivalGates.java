@@ -0,0 +1,191 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Live arrivals for REAL_TIME_TICK_MS runs: ARRIVAL_GATES threads each scan parcels at random
+// (exponential) intervals of wall-clock time and publish them into a shared MpscArrivalBuffer
+// with their scan time, together at the configured mean number of parcels per tick. At the
+// start of each tick the simulation thread takes what was published before the tick began,
+// numbers the parcels in that order and accepts them like any other arrivals; the time from
+// scan to sort is recorded per parcel. The queue is FIFO, so the scan times of accepted parcels
+// wait in a ring in the same order until their parcels are sorted. Gates run on platform
+// threads, one per gate.
+public class ArrivalGates implements ArrivalSource {
+    public static final int DEFAULT_GATES = 8;
+    public static final int BUFFER_CAPACITY = 4096;
+
+    private final CityDictionary cities;
+    private final MpscArrivalBuffer buffer;  // City ids; ParcelStore.NONE until published
+    // The other fields by buffer slot, written before the city id is published
+    private final long[] scanTicks;          // Scan nanoTime
+    private final byte[] priorities;
+    private final byte[] sizes;
+    private final Thread[] threads;
+    private final double meanGapNanos;       // Per gate
+    private volatile boolean running;
+    private final AtomicLong dropped = new AtomicLong();  // Scans that found the buffer full
+
+    // Consumer side, simulation thread only
+    private long taken;
+    private long takeLimit;                  // Sequence up to which this tick takes parcels
+    private int limitTick;
+    private int cityId;
+    private int priority;
+    private int sizeIndex;
+    private long scanTime;
+    private long[] acceptedScanTimes;         // Ring of accepted parcels not sorted yet, oldest first
+    private int acceptedHead;
+    private int acceptedCount;
+    private final LatencyHistogram scanToSort;
+
+    private class Gate implements Runnable {
+        final SimulationRandom random;
+
+        Gate(SimulationRandom random) {
+            this.random = random;
+        }
+
+        public void run() {
+            long next = System.nanoTime();
+            while (running) {
+                next += (long) (-Math.log(1.0 - random.nextDouble()) * meanGapNanos);
+                long now;
+                while (running && (now = System.nanoTime()) < next) {
+                    LockSupport.parkNanos(next - now);
+                }
+                if (!running) {
+                    return;
+                }
+                int city = cities.getListId(random.nextInt(cities.getListSize()));
+                int parcelPriority = random.nextInt(Parcel.PRIORITY_LEVELS) + 1;
+                int size = random.nextInt(Parcel.SIZES.length);
+                long sequence = buffer.claim(1);
+                if (sequence < 0) {
+                    dropped.incrementAndGet();
+                    continue;
+                }
+                int slot = (int) (sequence % BUFFER_CAPACITY);
+                priorities[slot] = (byte) parcelPriority;
+                sizes[slot] = (byte) size;
+                scanTicks[slot] = System.nanoTime();
+                buffer.publish(sequence, city);
+            }
+        }
+    }
+
+    // Each gate draws from its own stream split off random
+    public ArrivalGates(Configuration config, SimulationRandom random, int tickMillis) {
+        this.cities = config.getCities();
+        this.buffer = new MpscArrivalBuffer(BUFFER_CAPACITY);
+        this.scanTicks = new long[BUFFER_CAPACITY];
+        this.priorities = new byte[BUFFER_CAPACITY];
+        this.sizes = new byte[BUFFER_CAPACITY];
+        this.threads = new Thread[Math.max(1, config.getArrivalGates())];
+
+        int min = Math.max(0, config.getParcelPerTickMin());
+        int max = Math.max(min, config.getParcelPerTickMax());
+        double parcelsPerTick = (min + max) / 2.0;
+        if (config.hasArrivalProbability()) {
+            parcelsPerTick = config.getArrivalProbability() * (Math.max(1, min) + max) / 2.0;
+        }
+        this.meanGapNanos = parcelsPerTick > 0 ? tickMillis * 1e6 * threads.length / parcelsPerTick
+                                               : Double.POSITIVE_INFINITY;
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Gate(random.split()), "arrival-gate-" + i);
+            threads[i].setDaemon(true);
+        }
+        this.acceptedScanTimes = new long[1024];
+        this.scanToSort = new LatencyHistogram();
+        this.limitTick = -1;
+    }
+
+    public void start() {
+        if (running || meanGapNanos == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        running = true;
+        for (Thread thread : threads) {
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread thread : threads) {
+            LockSupport.unpark(thread);
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Parcels may arrive at any tick
+    public int peekNextTick() {
+        return 0;
+    }
+
+    // Takes the next parcel published before the first poll of currentTick
+    public boolean poll(int currentTick) {
+        if (currentTick != limitTick) {
+            limitTick = currentTick;
+            takeLimit = taken + buffer.size();
+        }
+        if (taken >= takeLimit) {
+            return false;
+        }
+        int city = buffer.peek();
+        if (city == ParcelStore.NONE) {
+            return false;  // Claimed by a gate but not published yet; taken next tick
+        }
+        int slot = (int) (taken % BUFFER_CAPACITY);  // Read before dequeue lets a gate reuse it
+        cityId = city;
+        priority = priorities[slot];
+        sizeIndex = sizes[slot];
+        scanTime = scanTicks[slot];
+        buffer.dequeue();
+        taken++;
+        return true;
+    }
+
+    public int getParcelNumber() { return (int) taken; }
+    public int getCityId() { return cityId; }
+    public int getPriority() { return priority; }
+    public int getSizeIndex() { return sizeIndex; }
+    public long getPosition() { return taken; }
+
+    // The parcel last taken by poll joined the queue
+    public void markAccepted() {
+        if (acceptedCount == acceptedScanTimes.length) {
+            long[] grown = new long[acceptedCount * 2];
+            for (int i = 0; i < acceptedCount; i++) {
+                grown[i] = acceptedScanTimes[(acceptedHead + i) % acceptedCount];
+            }
+            acceptedScanTimes = grown;
+            acceptedHead = 0;
+        }
+        acceptedScanTimes[(acceptedHead + acceptedCount) % acceptedScanTimes.length] = scanTime;
+        acceptedCount++;
+    }
+
+    // The oldest accepted parcel has just been sorted into the BST from the queue
+    public void recordSorted() {
+        scanToSort.record(System.nanoTime() - acceptedScanTimes[acceptedHead]);
+        acceptedHead = (acceptedHead + 1) % acceptedScanTimes.length;
+        acceptedCount--;
+    }
+
+    public int getGateCount() { return threads.length; }
+    public long getDropped() { return dropped.get(); }
+    public LatencyHistogram getScanToSort() { return scanToSort; }
+
+    public void close() {
+        stop();
+    }
+}
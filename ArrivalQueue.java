@@ -0,0 +1,16 @@
+import java.io.IOException;
+
+// Common view of the arrival stage so the sorting step works with any buffer variant.
+// Parcels are ParcelStore handles; an empty queue returns ParcelStore.NONE.
+public interface ArrivalQueue {
+    void enqueue(int parcel);
+    int dequeue();
+    int dequeueBatch(int[] target, int maxCount);  // Returns the number of parcels moved
+    int peek();
+    boolean isFull();
+    boolean isEmpty();
+    int size();
+    int getCapacity();
+    void writeSnapshot(SimulationSnapshot.Output out) throws IOException;  // Contents, oldest first
+    void readSnapshot(SimulationSnapshot.Input in) throws IOException;     // Into an empty queue
+}
@@ -0,0 +1,13 @@
+import java.io.IOException;
+
+// Recorded arrivals delivered tick by tick, in arrival-tick order
+public interface ArrivalSource {
+    int peekNextTick();                 // Arrival tick of the next parcel, Integer.MAX_VALUE when exhausted
+    boolean poll(int currentTick);      // Advances to the next parcel due by currentTick, false if none
+    int getParcelNumber();              // Fields of the parcel taken by the last successful poll, which
+    int getCityId();                    // arrives at currentTick; valid until the next poll or peek
+    int getPriority();
+    int getSizeIndex();
+    long getPosition();                 // Resume point after the last parcel returned by poll
+    void close() throws IOException;
+}
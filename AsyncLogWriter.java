@@ -0,0 +1,246 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+// Lines go from the simulation thread to a background writer through a lock-free single-producer,
+// single-consumer queue of fixed-size segments, so logging never blocks the tick on disk. The
+// queue grows a segment at a time while the writer is behind; once bufferCapacity lines are
+// waiting, further lines are dropped and counted instead.
+public class AsyncLogWriter {
+    public static final int DEFAULT_BUFFER_CAPACITY = 1 << 18;
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 200;
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    private static final int SEGMENT_LINES = 1024;
+
+    private static final class Segment {
+        final String[] lines = new String[SEGMENT_LINES];
+        volatile Segment next;
+    }
+
+    private final int bufferCapacity;
+    private volatile long produced;    // Lines published by the producer
+    private volatile long consumed;    // Lines taken by the writer
+    private volatile Segment spare;    // A drained segment handed back for reuse
+    private volatile boolean closed;
+    private final Object closeLock = new Object();
+
+    // Producer state, only touched by the appending thread
+    private Segment tailSegment;
+    private int tailIndex;
+    private long pendingChars;         // Since the writer was last woken
+    private long droppedLines;
+
+    private final long flushIntervalNanos;
+    private final int flushBytes;
+    private final boolean consoleEcho;
+
+    // Writer-thread state
+    private Segment headSegment;
+    private int headIndex;
+    private final FileChannel channel;
+    private final ByteBuffer fileBuffer;
+    private final OutputStream console;
+    private final CharsetEncoder encoder;
+    private final Thread writerThread;
+    private final Thread shutdownHook;
+    private IOException writeError;
+
+    public AsyncLogWriter(String filename, int bufferCapacity, long flushIntervalMs,
+                          int flushBytes, boolean consoleEcho) throws IOException {
+        this(filename, bufferCapacity, flushIntervalMs, flushBytes, consoleEcho, false);
+    }
+
+    // With append the file is continued instead of truncated (used when a run resumes)
+    public AsyncLogWriter(String filename, int bufferCapacity, long flushIntervalMs,
+                          int flushBytes, boolean consoleEcho, boolean append) throws IOException {
+        if (bufferCapacity <= 0 || flushIntervalMs <= 0 || flushBytes <= 0) {
+            throw new IllegalArgumentException("Log buffer capacity, flush interval and flush bytes must be positive");
+        }
+
+        this.bufferCapacity = bufferCapacity;
+        this.tailSegment = new Segment();
+        this.headSegment = tailSegment;
+        this.flushIntervalNanos = flushIntervalMs * 1_000_000L;
+        this.flushBytes = flushBytes;
+        this.consoleEcho = consoleEcho;
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                        append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        this.fileBuffer = ByteBuffer.allocate(flushBytes);
+        this.console = consoleEcho ? new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), flushBytes) : null;
+        this.encoder = StandardCharsets.UTF_8.newEncoder();
+
+        this.writerThread = new Thread(this::writeLoop, "log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        // Drain whatever is still buffered if the JVM exits without close()
+        this.shutdownHook = new Thread(this::closeQuietly, "log-writer-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    // Hands the line to the writer thread without waiting; called from one thread only
+    public void append(String line) {
+        if (closed) {
+            return;
+        }
+        long count = produced;
+        if (count - consumed >= bufferCapacity) {
+            droppedLines++;
+            return;
+        }
+        if (tailIndex == SEGMENT_LINES) {
+            Segment next = spare;
+            if (next != null) {
+                spare = null;
+            } else {
+                next = new Segment();
+            }
+            tailSegment.next = next;
+            tailSegment = next;
+            tailIndex = 0;
+        }
+        tailSegment.lines[tailIndex++] = line;
+        produced = count + 1;  // Publishes the line (and a new segment) to the writer
+
+        pendingChars += line.length() + 1;
+        if (pendingChars >= flushBytes) {
+            pendingChars = 0;
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    // Lines that found the buffer full; read from the appending thread
+    public long getDroppedLines() {
+        return droppedLines;
+    }
+
+    public void close() throws IOException {
+        synchronized (closeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        LockSupport.unpark(writerThread);
+
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down
+        }
+
+        channel.close();
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            // Read before draining: everything appended before close() is then visible
+            boolean finished = closed;
+            if (!finished) {
+                // Woken early by the producer once flushBytes are pending, or by close()
+                LockSupport.parkNanos(this, flushIntervalNanos);
+                finished = closed;
+            }
+
+            long available = produced;
+            if (writeError == null) {
+                try {
+                    writeBatch(available);
+                } catch (IOException e) {
+                    writeError = e;
+                    System.err.println("Error writing log file: " + e.getMessage());
+                }
+            }
+            // After a write error lines are still taken, so the buffer never stays full
+            while (consumed < available) {
+                takeLine();
+                consumed = consumed + 1;
+            }
+
+            if (finished) {
+                return;
+            }
+        }
+    }
+
+    // The next published line; drained segments are handed back to the producer
+    private String takeLine() {
+        if (headIndex == SEGMENT_LINES) {
+            Segment drained = headSegment;
+            headSegment = drained.next;
+            headIndex = 0;
+            drained.next = null;
+            spare = drained;
+        }
+        String line = headSegment.lines[headIndex];
+        headSegment.lines[headIndex++] = null;
+        return line;
+    }
+
+    // Writes the lines published up to available; consumed advances line by line, so the producer
+    // sees room as soon as a line is encoded
+    private void writeBatch(long available) throws IOException {
+        while (consumed < available) {
+            String line = takeLine();
+            consumed = consumed + 1;
+            encode(CharBuffer.wrap(line));
+            encode(CharBuffer.wrap(System.lineSeparator()));
+        }
+        drainFileBuffer();
+
+        if (console != null) {
+            console.flush();
+        }
+    }
+
+    private void encode(CharBuffer chars) throws IOException {
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, fileBuffer, true);
+            if (!result.isOverflow()) {
+                return;
+            }
+            drainFileBuffer();
+        }
+    }
+
+    // Writes the encoded bytes to the log file (and console) in one large chunk
+    private void drainFileBuffer() throws IOException {
+        fileBuffer.flip();
+        if (console != null) {
+            console.write(fileBuffer.array(), fileBuffer.arrayOffset(), fileBuffer.limit());
+        }
+        while (fileBuffer.hasRemaining()) {
+            channel.write(fileBuffer);
+        }
+        fileBuffer.clear();
+    }
+
+    public boolean isConsoleEcho() {
+        return consoleEcho;
+    }
+}
@@ -0,0 +1,106 @@
+// Indexed binary max-heap of the terminals' sorter backlogs, ordered by parcel count and then
+// by the lower city id. positions locates each city in the heap, so a changed count is one sift
+// of O(log n), and the k largest backlogs are read by popping them and pushing them back.
+public class BacklogHeap {
+    private final int[] heap;       // City ids; heap[0] has the largest backlog
+    private final int[] positions;  // Heap index by city id, -1 for cities that are not terminals
+    private final int[] counts;     // Backlog by city id
+    private int size;
+
+    public BacklogHeap(int cityCount) {
+        this.heap = new int[cityCount];
+        this.positions = new int[cityCount];
+        this.counts = new int[cityCount];
+        for (int i = 0; i < cityCount; i++) {
+            positions[i] = -1;
+        }
+        this.size = 0;
+    }
+
+    // Adds a terminal with an empty backlog; a city added before is ignored
+    public void add(int cityId) {
+        if (positions[cityId] >= 0) {
+            return;
+        }
+        heap[size] = cityId;
+        positions[cityId] = size;
+        siftUp(size++);
+    }
+
+    public void update(int cityId, int count) {
+        int index = positions[cityId];
+        if (index < 0 || counts[cityId] == count) {
+            return;
+        }
+        int previous = counts[cityId];
+        counts[cityId] = count;
+        if (count > previous) {
+            siftUp(index);
+        } else {
+            siftDown(index);
+        }
+    }
+
+    public int getCount(int cityId) {
+        return counts[cityId];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Writes the cities with the k largest backlogs to target, largest first; returns how many
+    public int top(int[] target, int k) {
+        int n = Math.min(k, size);
+        for (int i = 0; i < n; i++) {
+            target[i] = heap[0];
+            swap(0, --size);
+            siftDown(0);
+        }
+        // The popped cities sit right behind the heap; sifting them up again restores it
+        for (int i = 0; i < n; i++) {
+            siftUp(size++);
+        }
+        return n;
+    }
+
+    private boolean ranksAbove(int cityA, int cityB) {
+        return counts[cityA] > counts[cityB] || (counts[cityA] == counts[cityB] && cityA < cityB);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!ranksAbove(heap[index], heap[parent])) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && ranksAbove(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!ranksAbove(heap[child], heap[index])) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int city = heap[i];
+        heap[i] = heap[j];
+        heap[j] = city;
+        positions[heap[i]] = i;
+        positions[heap[j]] = j;
+    }
+}
@@ -0,0 +1,51 @@
+import java.util.HashMap;
+import java.util.Map;
+
+// Dense integer ids for the destinations in CITY_LIST, assigned in list order when the
+// configuration is loaded. Per-city state is kept in arrays indexed by id, so the tick loop
+// looks cities up by array access instead of comparing names. A city listed twice keeps the
+// id of its first entry.
+public class CityDictionary {
+    private final String[] names;    // By id
+    private final int[] listIds;     // Id of each CITY_LIST entry, in list order
+    private final Map<String, Integer> ids;
+
+    public CityDictionary(String[] cityList) {
+        this.ids = new HashMap<>();
+        this.listIds = new int[cityList.length];
+        String[] distinct = new String[cityList.length];
+        for (int i = 0; i < cityList.length; i++) {
+            Integer id = ids.get(cityList[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(cityList[i], id);
+                distinct[id] = cityList[i];
+            }
+            listIds[i] = id;
+        }
+        this.names = new String[ids.size()];
+        System.arraycopy(distinct, 0, names, 0, names.length);
+    }
+
+    // Id of a configured city, or -1
+    public int getId(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int getListSize() {
+        return listIds.length;
+    }
+
+    public int getListId(int entry) {
+        return listIds[entry];
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+// Cold tier for the records of finished parcels. Records are appended as fixed-width rows to an
+// open block; a full block is deflated and kept either in memory or appended to a file, so the
+// heap only holds the open block, the compressed blocks (in memory mode) and a per-block index
+// of the lowest and highest parcel number. A lookup inflates the blocks whose range covers the
+// number, newest first, through a small LRU cache of inflated blocks. Records are final once
+// archived.
+public class ColdParcelArchive {
+    public static final int BLOCK_RECORDS = 4096;
+    public static final int DEFAULT_CACHE_BLOCKS = 8;
+
+    // int number, short city id, byte priority, byte size index, byte status ordinal,
+    // short return count, int arrival tick, int dispatch tick
+    private static final int RECORD_BYTES = 19;
+    private static final int BLOCK_BYTES = BLOCK_RECORDS * RECORD_BYTES;
+    private static final int CITY = 4;
+    private static final int PRIORITY = 6;
+    private static final int SIZE = 7;
+    private static final int STATUS = 8;
+    private static final int RETURNS = 9;
+    private static final int ARRIVAL = 11;
+    private static final int DISPATCH = 15;
+
+    private static final Parcel.ParcelStatus[] STATUSES = Parcel.ParcelStatus.values();
+
+    private final CityDictionary cities;
+    private final Path file;            // null keeps the blocks in memory
+    private final FileChannel channel;
+    private byte[][] memoryBlocks;      // Compressed blocks in memory mode
+    private long[] positions;           // File position of each block in file mode
+    private int[] lengths;              // Compressed length of each block
+    private int[] minNumbers;
+    private int[] maxNumbers;
+    private int blockCount;
+    private long compressedBytes;
+
+    private final ByteBuffer open;      // Records of the block being filled
+    private int openCount;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    private final Map<Integer, ByteBuffer> cache;  // Inflated blocks, least recently used first
+
+    // Blocks in memory
+    public ColdParcelArchive(CityDictionary cities, int cacheBlocks) {
+        this(cities, null, null, cacheBlocks);
+    }
+
+    // Blocks appended to a new file in directory, deleted again by close
+    public static ColdParcelArchive onDisk(CityDictionary cities, Path directory, int cacheBlocks)
+            throws IOException {
+        Path file = Files.createTempFile(Files.createDirectories(directory), "tracker-", ".cold");
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new ColdParcelArchive(cities, file, channel, cacheBlocks);
+    }
+
+    private ColdParcelArchive(CityDictionary cities, Path file, FileChannel channel, int cacheBlocks) {
+        if (cacheBlocks <= 0) {
+            throw new IllegalArgumentException("Cache must hold at least one block: " + cacheBlocks);
+        }
+        this.cities = cities;
+        this.file = file;
+        this.channel = channel;
+        this.memoryBlocks = new byte[channel == null ? 16 : 0][];
+        this.positions = new long[16];
+        this.lengths = new int[16];
+        this.minNumbers = new int[16];
+        this.maxNumbers = new int[16];
+        this.open = ByteBuffer.allocate(BLOCK_BYTES);
+        this.cache = new LinkedHashMap<Integer, ByteBuffer>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, ByteBuffer> eldest) {
+                return size() > cacheBlocks;
+            }
+        };
+    }
+
+    // Copies the parcel's current fields from its store row
+    public void append(ParcelStore parcels, int handle) {
+        int offset = openCount * RECORD_BYTES;
+        open.putInt(offset, parcels.getParcelNumber(handle));
+        open.putShort(offset + CITY, (short) parcels.getCityId(handle));
+        open.put(offset + PRIORITY, (byte) parcels.getPriority(handle));
+        open.put(offset + SIZE, (byte) parcels.getSizeIndex(handle));
+        open.put(offset + STATUS, (byte) parcels.getStatus(handle).ordinal());
+        open.putShort(offset + RETURNS, (short) parcels.getReturnCount(handle));
+        open.putInt(offset + ARRIVAL, parcels.getArrivalTick(handle));
+        open.putInt(offset + DISPATCH, parcels.getDispatchTick(handle));
+        if (++openCount == BLOCK_RECORDS) {
+            sealOpenBlock();
+        }
+    }
+
+    private void sealOpenBlock() {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < openCount; i++) {
+            int number = open.getInt(i * RECORD_BYTES);
+            min = Math.min(min, number);
+            max = Math.max(max, number);
+        }
+
+        compressed.reset();
+        deflater.reset();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater, BLOCK_BYTES)) {
+            out.write(open.array(), 0, openCount * RECORD_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error compressing cold tier block", e);
+        }
+        byte[] bytes = compressed.toByteArray();
+        addBlock(bytes, min, max);
+        openCount = 0;
+    }
+
+    private void addBlock(byte[] bytes, int min, int max) {
+        if (blockCount == lengths.length) {
+            int capacity = blockCount * 2;
+            positions = Arrays.copyOf(positions, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            minNumbers = Arrays.copyOf(minNumbers, capacity);
+            maxNumbers = Arrays.copyOf(maxNumbers, capacity);
+            if (channel == null) {
+                memoryBlocks = Arrays.copyOf(memoryBlocks, capacity);
+            }
+        }
+        if (channel == null) {
+            memoryBlocks[blockCount] = bytes;
+        } else {
+            try {
+                positions[blockCount] = channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer, positions[blockCount] + buffer.position());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error writing cold tier file", e);
+            }
+        }
+        lengths[blockCount] = bytes.length;
+        minNumbers[blockCount] = min;
+        maxNumbers[blockCount] = max;
+        blockCount++;
+        compressedBytes += bytes.length;
+    }
+
+    private byte[] readBlock(int block) {
+        if (channel == null) {
+            return memoryBlocks[block];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[block]);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, positions[block] + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of cold tier file");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading cold tier file", e);
+        }
+        return buffer.array();
+    }
+
+    private ByteBuffer inflatedBlock(int block) {
+        ByteBuffer records = cache.get(block);
+        if (records == null) {
+            byte[] bytes = new byte[BLOCK_BYTES];
+            inflater.reset();
+            inflater.setInput(readBlock(block));
+            try {
+                int length = 0;
+                while (!inflater.finished()) {
+                    length += inflater.inflate(bytes, length, bytes.length - length);
+                }
+                records = ByteBuffer.wrap(bytes, 0, length).slice();
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupt cold tier block " + block, e);
+            }
+            cache.put(block, records);
+        }
+        return records;
+    }
+
+    // Records of the block holding the parcel, positioned at its record, or null
+    private ByteBuffer locate(int number) {
+        int offset = indexOf(open, openCount, number);
+        if (offset >= 0) {
+            ByteBuffer view = open.duplicate();
+            view.position(offset);
+            return view;
+        }
+        for (int block = blockCount - 1; block >= 0; block--) {
+            if (number < minNumbers[block] || number > maxNumbers[block]) {
+                continue;
+            }
+            ByteBuffer records = inflatedBlock(block);
+            offset = indexOf(records, records.limit() / RECORD_BYTES, number);
+            if (offset >= 0) {
+                ByteBuffer view = records.duplicate();
+                view.position(offset);
+                return view;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(ByteBuffer records, int count, int number) {
+        for (int offset = 0; offset < count * RECORD_BYTES; offset += RECORD_BYTES) {
+            if (records.getInt(offset) == number) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int number) {
+        return locate(number) != null;
+    }
+
+    // Detached copy of the record, or null
+    public Parcel get(int number) {
+        ByteBuffer record = locate(number);
+        if (record == null) {
+            return null;
+        }
+        int offset = record.position();
+        int cityId = record.getShort(offset + CITY);
+        Parcel parcel = new Parcel(Parcel.formatID(number), cityId, cities.getName(cityId),
+                                   record.get(offset + PRIORITY), Parcel.SIZES[record.get(offset + SIZE)],
+                                   record.getInt(offset + ARRIVAL));
+        parcel.setStatus(STATUSES[record.get(offset + STATUS)]);
+        return parcel;
+    }
+
+    // -1 when the parcel is not archived
+    public int getProcessingDelay(int number) {
+        ByteBuffer record = locate(number);
+        if (record == null || record.getInt(record.position() + DISPATCH) == -1) {
+            return -1;
+        }
+        return record.getInt(record.position() + DISPATCH) - record.getInt(record.position() + ARRIVAL);
+    }
+
+    public int getReturnCount(int number) {
+        ByteBuffer record = locate(number);
+        return record != null ? record.getShort(record.position() + RETURNS) : 0;
+    }
+
+    public long size() {
+        return (long) blockCount * BLOCK_RECORDS + openCount;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    // Sealed blocks as compressed bytes with their number range, then the open block's records
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            byte[] bytes = readBlock(block);
+            out.writeInt(minNumbers[block]);
+            out.writeInt(maxNumbers[block]);
+            out.writeInt(bytes.length);
+            for (byte b : bytes) {
+                out.writeByte(b);
+            }
+        }
+        out.writeInt(openCount);
+        for (int i = 0; i < openCount * RECORD_BYTES; i++) {
+            out.writeByte(open.get(i));
+        }
+    }
+
+    // Into an empty archive
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        for (int blocks = in.readInt(); blocks > 0; blocks--) {
+            int min = in.readInt();
+            int max = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) in.readByte();
+            }
+            addBlock(bytes, min, max);
+        }
+        openCount = in.readInt();
+        for (int i = 0; i < openCount * RECORD_BYTES; i++) {
+            open.put(i, (byte) in.readByte());
+        }
+    }
+
+    // Deletes the file in file mode
+    public void close() throws IOException {
+        deflater.end();
+        inflater.end();
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+}
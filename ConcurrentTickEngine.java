@@ -0,0 +1,235 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Runs the arrival and dispatch stages of a tick on a thread pool. Every stage ends
+// in a barrier (invokeAll), and each producer and terminal worker owns a random
+// stream split off the simulation's, so a run is reproducible for a given seed
+// regardless of thread timing.
+public class ConcurrentTickEngine {
+    private final ExecutorService pool;
+    private final MpscArrivalBuffer arrivalBuffer;
+    private final ParcelStore parcels;
+    private final DestinationSorter destinationSorter;
+    private final CityDictionary cities;
+
+    private final ArrivalProducer[] producers;
+    private final DispatchWorker[] workers;
+    private final List<Callable<Void>> producerTasks;
+    private final List<Callable<Void>> workerTasks;
+
+    // Per-tick arrival state shared with the producers (written before the stage starts)
+    private int tick;
+    private int parcelCount;
+    private int admitted;
+    private int firstParcelNumber;
+    private long firstSequence;
+    private int[] handles;  // Store rows of the admitted parcels
+    private int[] discardedCityIds;
+
+    private class ArrivalProducer implements Callable<Void> {
+        final int index;
+        final SimulationRandom random;
+
+        ArrivalProducer(int index, SimulationRandom random) {
+            this.index = index;
+            this.random = random;
+        }
+
+        public Void call() {
+            // Each producer generates a fixed slice of the tick's parcels
+            int from = (int) ((long) parcelCount * index / producers.length);
+            int to = (int) ((long) parcelCount * (index + 1) / producers.length);
+
+            for (int ordinal = from; ordinal < to; ordinal++) {
+                int cityId = cities.getListId(random.nextInt(cities.getListSize()));
+                int priority = random.nextInt(Parcel.PRIORITY_LEVELS) + 1;
+                int sizeIndex = random.nextInt(Parcel.SIZES.length);
+
+                if (ordinal < admitted) {
+                    // Rows were allocated before the stage, so each producer fills only its own
+                    int handle = handles[ordinal];
+                    parcels.set(handle, firstParcelNumber + ordinal, cityId, priority, sizeIndex, tick);
+                    arrivalBuffer.publish(firstSequence + ordinal, handle);
+                } else {
+                    discardedCityIds[ordinal] = cityId;
+                }
+            }
+            return null;
+        }
+    }
+
+    private class DispatchWorker implements Callable<Void> {
+        final int cityId;
+        final String city;
+        final SimulationRandom random;
+        final double misroutingRate;
+        boolean active;
+        int budget;
+        int[] parcels = new int[1];
+        boolean[] misrouted = new boolean[1];
+        int count;
+
+        DispatchWorker(int cityId, String city, SimulationRandom random, double misroutingRate) {
+            this.cityId = cityId;
+            this.city = city;
+            this.random = random;
+            this.misroutingRate = misroutingRate;
+        }
+
+        public Void call() {
+            count = 0;
+            if (!active) {
+                return null;
+            }
+
+            // Workers touch only their own city's line; the tree is not modified in this stage
+            while (count < budget) {
+                if (count == parcels.length) {
+                    parcels = Arrays.copyOf(parcels, parcels.length * 2);
+                    misrouted = Arrays.copyOf(misrouted, misrouted.length * 2);
+                }
+                int moved = destinationSorter.pollNext(cityId, parcels, count, budget - count);
+                if (moved == 0) {
+                    break;
+                }
+                for (int i = count; i < count + moved; i++) {
+                    misrouted[i] = random.nextDouble() < misroutingRate;
+                }
+                count += moved;
+            }
+            return null;
+        }
+    }
+
+    public ConcurrentTickEngine(Configuration config, MpscArrivalBuffer arrivalBuffer, ParcelStore parcels,
+                                DestinationSorter destinationSorter, SimulationRandom random) {
+        this.arrivalBuffer = arrivalBuffer;
+        this.parcels = parcels;
+        this.destinationSorter = destinationSorter;
+        this.cities = config.getCities();
+        this.discardedCityIds = new int[Math.max(1, config.getParcelPerTickMax())];
+        this.handles = new int[discardedCityIds.length];
+
+        this.pool = Executors.newFixedThreadPool(config.getWorkerThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "tick-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.producers = new ArrivalProducer[config.getArrivalProducers()];
+        this.producerTasks = new ArrayList<>();
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new ArrivalProducer(i, random.split());
+            producerTasks.add(producers[i]);
+        }
+
+        // One worker per distinct city; a worker's terminal index is its city id
+        this.workers = new DispatchWorker[cities.size()];
+        this.workerTasks = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new DispatchWorker(i, cities.getName(i), random.split(), config.getMisroutingRate());
+            workerTasks.add(workers[i]);
+        }
+    }
+
+    // Generates parcelCount parcels in parallel; the first `admitted` ones are added to the
+    // parcel store and published to the arrival buffer with consecutive parcel numbers, the
+    // rest are discarded. Returns the buffer sequence of the first admitted parcel.
+    public long generateArrivals(int tick, int parcelCount, int admitted, int firstParcelNumber) {
+        this.tick = tick;
+        this.parcelCount = parcelCount;
+        this.admitted = admitted;
+        this.firstParcelNumber = firstParcelNumber;
+        if (discardedCityIds.length < parcelCount) {
+            discardedCityIds = new int[parcelCount];
+            handles = new int[parcelCount];
+        }
+
+        this.firstSequence = admitted > 0 ? arrivalBuffer.claim(admitted) : 0;
+        if (firstSequence < 0) {
+            throw new IllegalStateException("Arrival buffer cannot hold " + admitted + " parcels");
+        }
+
+        for (int i = 0; i < admitted; i++) {
+            handles[i] = parcels.allocate();
+        }
+
+        runStage(producerTasks);
+        return firstSequence;
+    }
+
+    public int getDiscardedCityId(int ordinal) {
+        return discardedCityIds[ordinal];
+    }
+
+    // Runs one worker per terminal; each terminal at a dock takes up to budget parcels
+    public void dispatch(TerminalRotator docks, int budget) {
+        for (DispatchWorker worker : workers) {
+            worker.active = docks.isActive(worker.cityId);
+            worker.budget = budget;
+        }
+        runStage(workerTasks);
+    }
+
+    public int getTerminalCount() {
+        return workers.length;
+    }
+
+    public String getTerminalCity(int terminal) {
+        return workers[terminal].city;
+    }
+
+    public int getDispatchedCount(int terminal) {
+        return workers[terminal].count;
+    }
+
+    public int getDispatchedParcel(int terminal, int index) {
+        return workers[terminal].parcels[index];
+    }
+
+    public boolean isMisrouted(int terminal, int index) {
+        return workers[terminal].misrouted[index];
+    }
+
+    // invokeAll returns only when every task has finished, which is the tick barrier
+    private void runStage(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Simulation stage interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation stage failed", e.getCause());
+        }
+    }
+
+    // Random stream positions of the producers and workers
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        for (ArrivalProducer producer : producers) {
+            out.writeLong(producer.random.getSeed());
+            out.writeLong(producer.random.getGamma());
+        }
+        for (DispatchWorker worker : workers) {
+            out.writeLong(worker.random.getSeed());
+            out.writeLong(worker.random.getGamma());
+        }
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        for (ArrivalProducer producer : producers) {
+            producer.random.restore(in.readLong(), in.readLong());
+        }
+        for (DispatchWorker worker : workers) {
+            worker.random.restore(in.readLong(), in.readLong());
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
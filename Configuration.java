@@ -2,6 +2,9 @@ import java.io.*;
 import java.util.*;
 
 public class Configuration {
+    // Detail written to the log; each level includes the ones before it
+    public enum LogLevel { OFF, SUMMARY, TICK, PARCEL }
+    
     private int maxTicks;
     private int queueCapacity;
     private int terminalRotationInterval;
@@ -9,53 +12,76 @@ public class Configuration {
     private int parcelPerTickMax;
     private double misroutingRate;
     private String[] cityList;
+    private CityDictionary cities;
+    private int trackerInitialCapacity = ParcelTracker.DEFAULT_INITIAL_CAPACITY;
+    private double trackerMaxLoadFactor = ParcelTracker.DEFAULT_MAX_LOAD_FACTOR;
+    private boolean offHeapTracker = false;
+    private String trackerFile = null;  // Unset: off-heap records in direct buffers
+    private boolean coldTier = false;
+    private boolean coldTierOnDisk = false;
+    private String coldTierDirectory = "cold";
+    private int coldTierCacheBlocks = ColdParcelArchive.DEFAULT_CACHE_BLOCKS;
+    private boolean retryWheel = false;
+    private int[] retryBackoff = {1};  // Ticks before a parcel's nth return may be sorted again
+    private int retryWheelSlots = RetryTimingWheel.DEFAULT_SLOTS;
+    private int logBufferCapacity = AsyncLogWriter.DEFAULT_BUFFER_CAPACITY;
+    private long logFlushIntervalMs = AsyncLogWriter.DEFAULT_FLUSH_INTERVAL_MS;
+    private int logFlushBytes = AsyncLogWriter.DEFAULT_FLUSH_BYTES;
+    private boolean logConsoleEcho = true;
+    private LogLevel logLevel = LogLevel.PARCEL;
+    private boolean priorityDispatch = false;
+    private boolean concurrentExecution = false;
+    private int arrivalProducers = 4;
+    private int workerThreads = Runtime.getRuntime().availableProcessors();
+    private long randomSeed;
+    private boolean randomSeedSet = false;
+    private int sortRate = 1;
+    private int dispatchRate = 1;
+    private int activeDocks = 1;
+    private boolean backlogRotation = false;
+    private boolean drainMode = false;
+    private int tickBudget = 0;
+    private boolean spillOverflow = false;
+    private long spillLimit = 100000;
+    private String spillDirectory = "spill";
+    private int spillSegmentBytes = SpillingArrivalBuffer.DEFAULT_SEGMENT_BYTES;
+    private boolean eventDriven = false;
+    private double arrivalProbability = -1;  // Unset: every tick draws from [min, max]
+    private String journalFile = null;
+    private String arrivalTrace = null;
+    private boolean metricsJmx = false;
+    private int metricsHttpPort = 0;
+    private int checkpointInterval = 0;
+    private String checkpointFile = "checkpoint.snap";
+    private String networkFile = "network.txt";
+    private int realTimeTickMs = 0;  // 0: ticks run back to back
+    private int arrivalGates = ArrivalGates.DEFAULT_GATES;
+    private final StringBuilder text = new StringBuilder();  // Lines as read, kept for the journal header
     
     public Configuration(String filename) {
         loadConfiguration(filename);
+        buildCityDictionary();
+    }
+    
+    private Configuration() {
+    }
+    
+    // Parses configuration lines held in memory, e.g. the copy stored in a journal
+    public static Configuration fromText(String configText) {
+        Configuration config = new Configuration();
+        try {
+            config.loadConfiguration(new BufferedReader(new StringReader(configText)));
+        } catch (IOException e) {
+            System.err.println("Error reading configuration text: " + e.getMessage());
+            config.setDefaultValues();
+        }
+        config.buildCityDictionary();
+        return config;
     }
     
     private void loadConfiguration(String filename) {
         try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("#")) {
-                    continue;
-                }
-                
-                String[] parts = line.split("=");
-                if (parts.length == 2) {
-                    String key = parts[0].trim();
-                    String value = parts[1].trim();
-                    
-                    switch (key) {
-                        case "MAX_TICKS":
-                            maxTicks = Integer.parseInt(value);
-                            break;
-                        case "QUEUE_CAPACITY":
-                            queueCapacity = Integer.parseInt(value);
-                            break;
-                        case "TERMINAL_ROTATION_INTERVAL":
-                            terminalRotationInterval = Integer.parseInt(value);
-                            break;
-                        case "PARCEL_PER_TICK_MIN":
-                            parcelPerTickMin = Integer.parseInt(value);
-                            break;
-                        case "PARCEL_PER_TICK_MAX":
-                            parcelPerTickMax = Integer.parseInt(value);
-                            break;
-                        case "MISROUTING_RATE":
-                            misroutingRate = Double.parseDouble(value);
-                            break;
-                        case "CITY_LIST":
-                            cityList = value.split(",");
-                            for (int i = 0; i < cityList.length; i++) {
-                                cityList[i] = cityList[i].trim();
-                            }
-                            break;
-                    }
-                }
-            }
+            loadConfiguration(reader);
         } catch (IOException e) {
             System.err.println("Error reading configuration file: " + e.getMessage());
             // Set default values
@@ -63,6 +89,183 @@ public class Configuration {
         }
     }
     
+    private void loadConfiguration(BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            text.append(line).append('\n');
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            
+            String[] parts = line.split("=");
+            if (parts.length == 2) {
+                String key = parts[0].trim();
+                String value = parts[1].trim();
+                
+                switch (key) {
+                    case "MAX_TICKS":
+                        maxTicks = Integer.parseInt(value);
+                        break;
+                    case "QUEUE_CAPACITY":
+                        queueCapacity = Integer.parseInt(value);
+                        break;
+                    case "TERMINAL_ROTATION_INTERVAL":
+                        terminalRotationInterval = Integer.parseInt(value);
+                        break;
+                    case "PARCEL_PER_TICK_MIN":
+                        parcelPerTickMin = Integer.parseInt(value);
+                        break;
+                    case "PARCEL_PER_TICK_MAX":
+                        parcelPerTickMax = Integer.parseInt(value);
+                        break;
+                    case "MISROUTING_RATE":
+                        misroutingRate = Double.parseDouble(value);
+                        break;
+                    case "CITY_LIST":
+                        cityList = value.split(",");
+                        for (int i = 0; i < cityList.length; i++) {
+                            cityList[i] = cityList[i].trim();
+                        }
+                        break;
+                    case "TRACKER_INITIAL_CAPACITY":
+                        trackerInitialCapacity = Integer.parseInt(value);
+                        break;
+                    case "TRACKER_MAX_LOAD_FACTOR":
+                        trackerMaxLoadFactor = Double.parseDouble(value);
+                        break;
+                    case "TRACKER_STORAGE":
+                        offHeapTracker = value.equalsIgnoreCase("OFF_HEAP");
+                        break;
+                    case "TRACKER_FILE":
+                        trackerFile = value;
+                        break;
+                    case "TRACKER_COLD_TIER":
+                        coldTier = value.equalsIgnoreCase("MEMORY") || value.equalsIgnoreCase("FILE");
+                        coldTierOnDisk = value.equalsIgnoreCase("FILE");
+                        break;
+                    case "TRACKER_COLD_DIRECTORY":
+                        coldTierDirectory = value;
+                        break;
+                    case "TRACKER_COLD_CACHE_BLOCKS":
+                        coldTierCacheBlocks = Integer.parseInt(value);
+                        break;
+                    case "ACTIVE_DOCKS":
+                        activeDocks = Integer.parseInt(value);
+                        break;
+                    case "ROTATION_POLICY":
+                        backlogRotation = value.equalsIgnoreCase("BACKLOG");
+                        break;
+                    case "RETURN_SCHEDULER":
+                        retryWheel = value.equalsIgnoreCase("WHEEL");
+                        break;
+                    case "RETRY_BACKOFF":
+                        String[] ticks = value.split(",");
+                        retryBackoff = new int[ticks.length];
+                        for (int i = 0; i < ticks.length; i++) {
+                            retryBackoff[i] = Integer.parseInt(ticks[i].trim());
+                        }
+                        break;
+                    case "RETRY_WHEEL_SLOTS":
+                        retryWheelSlots = Integer.parseInt(value);
+                        break;
+                    case "LOG_BUFFER_CAPACITY":
+                        logBufferCapacity = Integer.parseInt(value);
+                        break;
+                    case "LOG_FLUSH_INTERVAL_MS":
+                        logFlushIntervalMs = Long.parseLong(value);
+                        break;
+                    case "LOG_FLUSH_BYTES":
+                        logFlushBytes = Integer.parseInt(value);
+                        break;
+                    case "LOG_LEVEL":
+                        logLevel = LogLevel.valueOf(value.toUpperCase());
+                        break;
+                    case "LOG_CONSOLE_ECHO":
+                        logConsoleEcho = Boolean.parseBoolean(value);
+                        break;
+                    case "DISPATCH_POLICY":
+                        priorityDispatch = value.equalsIgnoreCase("PRIORITY");
+                        break;
+                    case "EXECUTION_MODE":
+                        concurrentExecution = value.equalsIgnoreCase("CONCURRENT");
+                        break;
+                    case "ARRIVAL_PRODUCERS":
+                        arrivalProducers = Integer.parseInt(value);
+                        break;
+                    case "WORKER_THREADS":
+                        workerThreads = Integer.parseInt(value);
+                        break;
+                    case "SORT_RATE":
+                        sortRate = Integer.parseInt(value);
+                        break;
+                    case "DISPATCH_RATE":
+                        dispatchRate = Integer.parseInt(value);
+                        break;
+                    case "BATCH_MODE":
+                        drainMode = value.equalsIgnoreCase("DRAIN");
+                        break;
+                    case "TICK_BUDGET":
+                        tickBudget = Integer.parseInt(value);
+                        break;
+                    case "OVERFLOW_MODE":
+                        spillOverflow = value.equalsIgnoreCase("SPILL");
+                        break;
+                    case "SPILL_LIMIT":
+                        spillLimit = Long.parseLong(value);
+                        break;
+                    case "SPILL_DIRECTORY":
+                        spillDirectory = value;
+                        break;
+                    case "SPILL_SEGMENT_BYTES":
+                        spillSegmentBytes = Integer.parseInt(value);
+                        break;
+                    case "SIMULATION_ENGINE":
+                        eventDriven = value.equalsIgnoreCase("EVENT");
+                        break;
+                    case "ARRIVAL_PROBABILITY":
+                        arrivalProbability = Double.parseDouble(value);
+                        break;
+                    case "CHECKPOINT_INTERVAL":
+                        checkpointInterval = Integer.parseInt(value);
+                        break;
+                    case "CHECKPOINT_FILE":
+                        checkpointFile = value;
+                        break;
+                    case "NETWORK_FILE":
+                        networkFile = value;
+                        break;
+                    case "REAL_TIME_TICK_MS":
+                        realTimeTickMs = Integer.parseInt(value);
+                        break;
+                    case "ARRIVAL_GATES":
+                        arrivalGates = Integer.parseInt(value);
+                        break;
+                    case "JOURNAL_FILE":
+                        journalFile = value;
+                        break;
+                    case "ARRIVAL_TRACE":
+                        arrivalTrace = value;
+                        break;
+                    case "METRICS_JMX":
+                        metricsJmx = Boolean.parseBoolean(value);
+                        break;
+                    case "METRICS_HTTP_PORT":
+                        metricsHttpPort = Integer.parseInt(value);
+                        break;
+                    case "RANDOM_SEED":
+                        randomSeed = Long.parseLong(value);
+                        randomSeedSet = true;
+                        break;
+                }
+            }
+        }
+    }
+    
+    private void buildCityDictionary() {
+        cities = new CityDictionary(cityList != null ? cityList : new String[0]);
+    }
+    
     private void setDefaultValues() {
         maxTicks = 300;
         queueCapacity = 30;
@@ -81,4 +284,50 @@ public class Configuration {
     public int getParcelPerTickMax() { return parcelPerTickMax; }
     public double getMisroutingRate() { return misroutingRate; }
     public String[] getCityList() { return cityList; }
+    public CityDictionary getCities() { return cities; }
+    public int getTrackerInitialCapacity() { return trackerInitialCapacity; }
+    public double getTrackerMaxLoadFactor() { return trackerMaxLoadFactor; }
+    public boolean isOffHeapTracker() { return offHeapTracker; }
+    public String getTrackerFile() { return trackerFile; }
+    public boolean isColdTier() { return coldTier; }
+    public boolean isColdTierOnDisk() { return coldTierOnDisk; }
+    public String getColdTierDirectory() { return coldTierDirectory; }
+    public int getColdTierCacheBlocks() { return coldTierCacheBlocks; }
+    public boolean isRetryWheel() { return retryWheel; }
+    public int[] getRetryBackoff() { return retryBackoff; }
+    public int getRetryWheelSlots() { return retryWheelSlots; }
+    public int getLogBufferCapacity() { return logBufferCapacity; }
+    public long getLogFlushIntervalMs() { return logFlushIntervalMs; }
+    public int getLogFlushBytes() { return logFlushBytes; }
+    public boolean isLogConsoleEcho() { return logConsoleEcho; }
+    public LogLevel getLogLevel() { return logLevel; }
+    public boolean isPriorityDispatch() { return priorityDispatch; }
+    public boolean isConcurrentExecution() { return concurrentExecution; }
+    public int getArrivalProducers() { return arrivalProducers; }
+    public int getWorkerThreads() { return workerThreads; }
+    public int getSortRate() { return sortRate; }
+    public int getDispatchRate() { return dispatchRate; }
+    public int getActiveDocks() { return activeDocks; }
+    public boolean isBacklogRotation() { return backlogRotation; }
+    public boolean isDrainMode() { return drainMode; }
+    public int getTickBudget() { return tickBudget; }
+    public boolean isSpillOverflow() { return spillOverflow; }
+    public long getSpillLimit() { return spillLimit; }
+    public String getSpillDirectory() { return spillDirectory; }
+    public int getSpillSegmentBytes() { return spillSegmentBytes; }
+    public boolean isEventDriven() { return eventDriven; }
+    public boolean hasArrivalProbability() { return arrivalProbability >= 0; }
+    public double getArrivalProbability() { return arrivalProbability; }
+    public boolean hasRandomSeed() { return randomSeedSet; }
+    public long getRandomSeed() { return randomSeed; }
+    public String getJournalFile() { return journalFile; }
+    public String getArrivalTrace() { return arrivalTrace; }
+    public boolean isMetricsJmx() { return metricsJmx; }
+    public int getMetricsHttpPort() { return metricsHttpPort; }
+    public int getCheckpointInterval() { return checkpointInterval; }
+    public String getCheckpointFile() { return checkpointFile; }
+    public String getNetworkFile() { return networkFile; }
+    public int getRealTimeTickMs() { return realTimeTickMs; }
+    public int getArrivalGates() { return arrivalGates; }
+    public String getText() { return text.toString(); }
 } 
\ No newline at end of file
@@ -1,140 +1,579 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+// Parcels are ParcelStore handles; polling an empty line returns ParcelStore.NONE
 public class DestinationSorter {
+    private static final int[] NO_PARCELS = new int[0];
+
+    private final ParcelStore parcels;
     private BSTNode root;
-    
+    private int nodeCount;
+    private boolean priorityDispatch;
+    private BSTNode[] nodesById;  // Nodes by CityDictionary id; the tree is only searched to add a city
+    private int totalParcels;     // Across all cities, kept with the node counts
+
+    // AVL node: heights are kept so the tree stays balanced whatever order cities arrive in
     private class BSTNode {
         String cityName;
-        List<Parcel> parcelList;
+        int cityId;
+        ParcelDeque[] buckets;  // One line per priority level, or a single FIFO line
+        int parcelCount;
         BSTNode left, right;
-        
-        BSTNode(String cityName) {
+        int height;
+
+        BSTNode(String cityName, int cityId) {
             this.cityName = cityName;
-            this.parcelList = new ArrayList<>();
+            this.cityId = cityId;
+            this.buckets = new ParcelDeque[priorityDispatch ? Parcel.PRIORITY_LEVELS : 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new ParcelDeque();
+            }
+            this.parcelCount = 0;
             this.left = null;
             this.right = null;
+            this.height = 1;
+        }
+
+        void add(int parcel) {
+            if (priorityDispatch) {
+                buckets[Parcel.priorityIndex(parcels.getPriority(parcel))].addByArrival(parcel);
+            } else {
+                buckets[0].addLast(parcel);
+            }
+            parcelCount++;
+            totalParcels++;
+        }
+
+        // Highest-priority non-empty line, or null when the city has no parcels
+        ParcelDeque firstNonEmpty() {
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i].size() > 0) {
+                    return buckets[i];
+                }
+            }
+            return null;
+        }
+
+        int peek() {
+            ParcelDeque bucket = firstNonEmpty();
+            return bucket != null ? bucket.peekFirst() : ParcelStore.NONE;
+        }
+
+        int poll() {
+            ParcelDeque bucket = firstNonEmpty();
+            if (bucket == null) {
+                return ParcelStore.NONE;
+            }
+            parcelCount--;
+            totalParcels--;
+            return bucket.pollFirst();
+        }
+    }
+
+    // Circular array deque so dispatching the head of a city's line is O(1). A priority line is
+    // served in arrival order, but a reprocessed return arrived long before the parcels at the
+    // tail: such parcels wait in a binary min-heap by (arrival tick, insertion order) instead, and
+    // the head of the line is whichever of the deque head and the heap top arrived first.
+    private class ParcelDeque {
+        private static final int INITIAL_CAPACITY = 8;
+
+        int[] items;
+        int head;
+        int count;
+        int[] returns;          // Heap of parcels that arrived before the tail, allocated on first use
+        int[] returnOrders;     // Insertion order of each heap entry, for equal arrival ticks
+        int returnCount;
+        int nextReturnOrder;
+        int latestReturnTick;   // No earlier than the arrival tick of any parcel in the heap
+
+        ParcelDeque() {
+            this.items = new int[INITIAL_CAPACITY];
+            this.head = 0;
+            this.count = 0;
+            this.returns = NO_PARCELS;
+            this.returnOrders = NO_PARCELS;
+        }
+
+        int size() {
+            return count + returnCount;
+        }
+
+        void addLast(int parcel) {
+            if (count == items.length) {
+                grow();
+            }
+            items[(head + count) % items.length] = parcel;
+            count++;
+        }
+
+        // Keeps the line ordered by arrival tick. Fresh parcels arrive in order and go to the tail;
+        // a parcel that arrived before the tail, or no later than a parcel in the heap, goes to
+        // the heap. The deque head therefore only ties with the heap top when it was added first.
+        void addByArrival(int parcel) {
+            int arrivalTick = parcels.getArrivalTick(parcel);
+            if ((count == 0 || arrivalTick >= parcels.getArrivalTick(get(count - 1)))
+                    && (returnCount == 0 || arrivalTick > latestReturnTick)) {
+                addLast(parcel);
+            } else {
+                pushReturn(parcel, nextReturnOrder++);
+            }
+        }
+
+        int peekFirst() {
+            if (returnFirst()) {
+                return returns[0];
+            }
+            return count > 0 ? items[head] : ParcelStore.NONE;
+        }
+
+        int pollFirst() {
+            return returnFirst() ? removeReturn(0) : pollHead();
+        }
+
+        // The heap top leads the line when it arrived strictly before the deque head
+        private boolean returnFirst() {
+            return returnCount > 0 && (count == 0 || parcels.getArrivalTick(returns[0])
+                                                     < parcels.getArrivalTick(items[head]));
+        }
+
+        int pollHead() {
+            if (count == 0) {
+                return ParcelStore.NONE;
+            }
+            int parcel = items[head];
+            head = (head + 1) % items.length;
+            count--;
+            return parcel;
+        }
+
+        int get(int i) {
+            return items[(head + i) % items.length];
+        }
+
+        int removeAt(int i) {
+            int parcel = get(i);
+            // Shift the later elements one slot towards the head
+            for (int j = i; j < count - 1; j++) {
+                items[(head + j) % items.length] = items[(head + j + 1) % items.length];
+            }
+            count--;
+            return parcel;
+        }
+
+        private void grow() {
+            int[] larger = new int[items.length * 2];
+            for (int i = 0; i < count; i++) {
+                larger[i] = get(i);
+            }
+            items = larger;
+            head = 0;
+        }
+
+        void pushReturn(int parcel, int order) {
+            if (returnCount == returns.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, returns.length * 2);
+                returns = Arrays.copyOf(returns, capacity);
+                returnOrders = Arrays.copyOf(returnOrders, capacity);
+            }
+            int arrivalTick = parcels.getArrivalTick(parcel);
+            latestReturnTick = returnCount == 0 ? arrivalTick : Math.max(latestReturnTick, arrivalTick);
+            returns[returnCount] = parcel;
+            returnOrders[returnCount] = order;
+            siftUp(returnCount++);
+        }
+
+        int removeReturn(int i) {
+            int parcel = returns[i];
+            returnCount--;
+            if (i < returnCount) {
+                returns[i] = returns[returnCount];
+                returnOrders[i] = returnOrders[returnCount];
+                siftDown(i);
+                siftUp(i);
+            }
+            return parcel;
+        }
+
+        // Heap entry a is served before heap entry b
+        private boolean before(int a, int b) {
+            int tickA = parcels.getArrivalTick(returns[a]);
+            int tickB = parcels.getArrivalTick(returns[b]);
+            return tickA != tickB ? tickA < tickB : returnOrders[a] - returnOrders[b] < 0;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!before(i, parent)) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (2 * i + 1 < returnCount) {
+                int child = 2 * i + 1;
+                if (child + 1 < returnCount && before(child + 1, child)) {
+                    child++;
+                }
+                if (!before(child, i)) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int parcel = returns[a];
+            returns[a] = returns[b];
+            returns[b] = parcel;
+            int order = returnOrders[a];
+            returnOrders[a] = returnOrders[b];
+            returnOrders[b] = order;
+        }
+
+        // Parcels in the order pollFirst would serve them
+        void copyTo(List<Parcel> result) {
+            ParcelDeque copy = new ParcelDeque();
+            copy.items = Arrays.copyOf(items, items.length);
+            copy.head = head;
+            copy.count = count;
+            copy.returns = Arrays.copyOf(returns, returns.length);
+            copy.returnOrders = Arrays.copyOf(returnOrders, returnOrders.length);
+            copy.returnCount = returnCount;
+            int parcel;
+            while ((parcel = copy.pollFirst()) != ParcelStore.NONE) {
+                result.add(parcels.toParcel(parcel));
+            }
         }
     }
-    
-    public DestinationSorter() {
+
+    public DestinationSorter(ParcelStore parcels) {
+        this(parcels, false);
+    }
+
+    // With priorityDispatch each city serves parcels by (priority, arrivalTick); otherwise FIFO
+    public DestinationSorter(ParcelStore parcels, boolean priorityDispatch) {
+        this.parcels = parcels;
         this.root = null;
+        this.nodeCount = 0;
+        this.priorityDispatch = priorityDispatch;
+        this.nodesById = new BSTNode[16];
     }
-    
-    public void insertParcel(Parcel parcel) {
-        String cityName = parcel.getDestinationCity();
-        root = insertParcelRecursive(root, cityName, parcel);
+
+    // Parcels for cities that already have a node skip the tree descent
+    public void insertParcel(int parcel) {
+        BSTNode node = nodeFor(parcels.getCityId(parcel));
+        if (node != null) {
+            node.add(parcel);
+        } else {
+            root = insertParcelRecursive(root, parcels.getDestinationCity(parcel), parcel);
+        }
     }
-    
-    private BSTNode insertParcelRecursive(BSTNode node, String cityName, Parcel parcel) {
+
+    public void insertParcels(int[] batch, int count) {
+        for (int i = 0; i < count; i++) {
+            insertParcel(batch[i]);
+        }
+    }
+
+    private BSTNode insertParcelRecursive(BSTNode node, String cityName, int parcel) {
         if (node == null) {
-            BSTNode newNode = new BSTNode(cityName);
-            newNode.parcelList.add(parcel);
+            BSTNode newNode = new BSTNode(cityName, parcels.getCityId(parcel));
+            newNode.add(parcel);
+            register(newNode);
             return newNode;
         }
-        
+
         int comparison = cityName.compareTo(node.cityName);
         if (comparison == 0) {
-            // City exists, add parcel to its list
-            node.parcelList.add(parcel);
+            // City exists, add parcel to its line
+            node.add(parcel);
+            return node;
         } else if (comparison < 0) {
             node.left = insertParcelRecursive(node.left, cityName, parcel);
         } else {
             node.right = insertParcelRecursive(node.right, cityName, parcel);
         }
-        
+
+        return rebalance(node);
+    }
+
+    private BSTNode nodeFor(int cityId) {
+        return cityId >= 0 && cityId < nodesById.length ? nodesById[cityId] : null;
+    }
+
+    private void register(BSTNode node) {
+        nodeCount++;
+        if (node.cityId < 0) {
+            return;
+        }
+        if (node.cityId >= nodesById.length) {
+            BSTNode[] larger = new BSTNode[Math.max(nodesById.length * 2, node.cityId + 1)];
+            System.arraycopy(nodesById, 0, larger, 0, nodesById.length);
+            nodesById = larger;
+        }
+        nodesById[node.cityId] = node;
+    }
+
+    private int height(BSTNode node) {
+        return node != null ? node.height : 0;
+    }
+
+    private void updateHeight(BSTNode node) {
+        node.height = Math.max(height(node.left), height(node.right)) + 1;
+    }
+
+    private BSTNode rebalance(BSTNode node) {
+        updateHeight(node);
+        int balance = height(node.left) - height(node.right);
+
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
         return node;
     }
-    
+
+    private BSTNode rotateRight(BSTNode node) {
+        BSTNode pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    private BSTNode rotateLeft(BSTNode node) {
+        BSTNode pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        updateHeight(node);
+        updateHeight(pivot);
+        return pivot;
+    }
+
+    // Returns a copy of the city's line; dispatch should use peekNext/pollNext instead
     public List<Parcel> getCityParcels(String city) {
+        return copyParcels(findNode(root, city));
+    }
+
+    public List<Parcel> getCityParcels(int cityId) {
+        return copyParcels(nodeFor(cityId));
+    }
+
+    private List<Parcel> copyParcels(BSTNode node) {
+        List<Parcel> result = new ArrayList<>();
+        if (node != null) {
+            for (ParcelDeque bucket : node.buckets) {
+                bucket.copyTo(result);
+            }
+        }
+        return result;
+    }
+
+    public int peekNext(String city) {
         BSTNode node = findNode(root, city);
-        return node != null ? new ArrayList<>(node.parcelList) : new ArrayList<>();
+        return node != null ? node.peek() : ParcelStore.NONE;
     }
-    
-    private BSTNode findNode(BSTNode node, String city) {
-        if (node == null || node.cityName.equals(city)) {
-            return node;
+
+    public int peekNext(int cityId) {
+        BSTNode node = nodeFor(cityId);
+        return node != null ? node.peek() : ParcelStore.NONE;
+    }
+
+    public int pollNext(String city) {
+        BSTNode node = findNode(root, city);
+        return node != null ? node.poll() : ParcelStore.NONE;
+    }
+
+    public int pollNext(int cityId) {
+        BSTNode node = nodeFor(cityId);
+        return node != null ? node.poll() : ParcelStore.NONE;
+    }
+
+    // Moves up to maxCount parcels from the head of the city's line into target[offset..]
+    public int pollNext(String city, int[] target, int offset, int maxCount) {
+        return pollNext(findNode(root, city), target, offset, maxCount);
+    }
+
+    public int pollNext(int cityId, int[] target, int offset, int maxCount) {
+        return pollNext(nodeFor(cityId), target, offset, maxCount);
+    }
+
+    private static int pollNext(BSTNode node, int[] target, int offset, int maxCount) {
+        int limit = Math.min(maxCount, target.length - offset);
+        int moved = 0;
+        if (node != null) {
+            int parcel;
+            while (moved < limit && (parcel = node.poll()) != ParcelStore.NONE) {
+                target[offset + moved++] = parcel;
+            }
         }
-        
-        int comparison = city.compareTo(node.cityName);
-        if (comparison < 0) {
-            return findNode(node.left, city);
-        } else {
-            return findNode(node.right, city);
+        return moved;
+    }
+
+    private BSTNode findNode(BSTNode node, String city) {
+        while (node != null) {
+            int comparison = city.compareTo(node.cityName);
+            if (comparison == 0) {
+                return node;
+            }
+            node = comparison < 0 ? node.left : node.right;
         }
+        return null;
     }
-    
+
     public void inOrderTraversal() {
         inOrderTraversalRecursive(root);
     }
-    
+
     private void inOrderTraversalRecursive(BSTNode node) {
         if (node != null) {
             inOrderTraversalRecursive(node.left);
-            System.out.println("City: " + node.cityName + " - Parcels: " + node.parcelList.size());
+            System.out.println("City: " + node.cityName + " - Parcels: " + node.parcelCount);
             inOrderTraversalRecursive(node.right);
         }
     }
-    
-    public Parcel removeParcel(String city, String parcelID) {
+
+    public int removeParcel(String city, String parcelID) {
         BSTNode node = findNode(root, city);
         if (node == null) {
-            return null;
+            return ParcelStore.NONE;
         }
-        
-        for (int i = 0; i < node.parcelList.size(); i++) {
-            if (node.parcelList.get(i).getParcelID().equals(parcelID)) {
-                return node.parcelList.remove(i);
+
+        int parcelNumber = ParcelTracker.parseKey(parcelID);
+        for (ParcelDeque bucket : node.buckets) {
+            for (int i = 0; i < bucket.count; i++) {
+                if (parcels.getParcelNumber(bucket.get(i)) == parcelNumber) {
+                    node.parcelCount--;
+                    totalParcels--;
+                    // The head of the line is the common case
+                    return i == 0 ? bucket.pollHead() : bucket.removeAt(i);
+                }
+            }
+            for (int i = 0; i < bucket.returnCount; i++) {
+                if (parcels.getParcelNumber(bucket.returns[i]) == parcelNumber) {
+                    node.parcelCount--;
+                    totalParcels--;
+                    return bucket.removeReturn(i);
+                }
             }
         }
-        return null;
+        return ParcelStore.NONE;
     }
-    
+
     public int countCityParcels(String city) {
         BSTNode node = findNode(root, city);
-        return node != null ? node.parcelList.size() : 0;
+        return node != null ? node.parcelCount : 0;
     }
-    
-    public int getHeight() {
-        return getHeightRecursive(root);
+
+    public int countCityParcels(int cityId) {
+        BSTNode node = nodeFor(cityId);
+        return node != null ? node.parcelCount : 0;
     }
-    
-    private int getHeightRecursive(BSTNode node) {
-        if (node == null) {
-            return 0;
-        }
-        
-        int leftHeight = getHeightRecursive(node.left);
-        int rightHeight = getHeightRecursive(node.right);
-        
-        return Math.max(leftHeight, rightHeight) + 1;
+
+    // Parcels in the tree across all cities
+    public int getTotalParcels() {
+        return totalParcels;
     }
-    
-    public int getNodeCount() {
-        return getNodeCountRecursive(root);
+
+    public int getHeight() {
+        return height(root);
     }
-    
-    private int getNodeCountRecursive(BSTNode node) {
-        if (node == null) {
-            return 0;
-        }
-        
-        return 1 + getNodeCountRecursive(node.left) + getNodeCountRecursive(node.right);
+
+    public int getNodeCount() {
+        return nodeCount;
     }
-    
+
     public String getCityWithHighestLoad() {
         return getCityWithHighestLoadRecursive(root, "", 0);
     }
-    
+
     private String getCityWithHighestLoadRecursive(BSTNode node, String maxCity, int maxCount) {
         if (node == null) {
             return maxCity;
         }
-        
+
         String leftResult = getCityWithHighestLoadRecursive(node.left, maxCity, maxCount);
-        String currentCity = node.parcelList.size() > maxCount ? node.cityName : maxCity;
-        int currentMax = Math.max(maxCount, node.parcelList.size());
-        
+        String currentCity = node.parcelCount > maxCount ? node.cityName : maxCity;
+        int currentMax = Math.max(maxCount, node.parcelCount);
+
         return getCityWithHighestLoadRecursive(node.right, currentCity, currentMax);
     }
-} 
\ No newline at end of file
+
+    // Pre-order with null markers, so reading rebuilds exactly the same tree shape
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        writeSnapshotRecursive(root, out);
+    }
+
+    private void writeSnapshotRecursive(BSTNode node, SimulationSnapshot.Output out) throws IOException {
+        out.writeBoolean(node != null);
+        if (node == null) {
+            return;
+        }
+        out.writeString(node.cityName);
+        out.writeInt(node.cityId);
+        out.writeInt(node.height);
+        for (ParcelDeque bucket : node.buckets) {
+            out.writeInt(bucket.count);
+            for (int i = 0; i < bucket.count; i++) {
+                out.writeInt(bucket.get(i));
+            }
+            // The heap in array order, so reading it back needs no reordering
+            out.writeInt(bucket.returnCount);
+            for (int i = 0; i < bucket.returnCount; i++) {
+                out.writeInt(bucket.returns[i]);
+                out.writeInt(bucket.returnOrders[i]);
+            }
+            out.writeInt(bucket.nextReturnOrder);
+            out.writeInt(bucket.latestReturnTick);
+        }
+        writeSnapshotRecursive(node.left, out);
+        writeSnapshotRecursive(node.right, out);
+    }
+
+    // Into an empty sorter with the same dispatch policy
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        root = readSnapshotRecursive(in);
+    }
+
+    private BSTNode readSnapshotRecursive(SimulationSnapshot.Input in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        BSTNode node = new BSTNode(in.readString(), in.readInt());
+        node.height = in.readInt();
+        for (ParcelDeque bucket : node.buckets) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                bucket.addLast(in.readInt());
+            }
+            int returnCount = in.readInt();
+            for (int i = 0; i < returnCount; i++) {
+                bucket.pushReturn(in.readInt(), in.readInt());
+            }
+            bucket.nextReturnOrder = in.readInt();
+            bucket.latestReturnTick = in.readInt();
+            node.parcelCount += count + returnCount;
+            totalParcels += count + returnCount;
+        }
+        register(node);
+        node.left = readSnapshotRecursive(in);
+        node.right = readSnapshotRecursive(in);
+        return node;
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+// Priority queue of timestamped events for the event-driven engine. A tick runs all of
+// its phases at once, so every event due at the earliest tick is taken together.
+public class EventCalendar {
+    public enum EventType { ARRIVAL, SORT, RETURN_ELIGIBLE, ROTATION, DISPATCH }
+
+    private static class Event implements Comparable<Event> {
+        final int tick;
+        final EventType type;
+
+        Event(int tick, EventType type) {
+            this.tick = tick;
+            this.type = type;
+        }
+
+        public int compareTo(Event other) {
+            if (tick != other.tick) {
+                return Integer.compare(tick, other.tick);
+            }
+            return type.compareTo(other.type);
+        }
+    }
+
+    private final PriorityQueue<Event> events;
+    private final int[] lastScheduled;  // Ticks of each event type are scheduled in increasing order
+    private long processedEvents;
+
+    public EventCalendar() {
+        this.events = new PriorityQueue<>();
+        this.lastScheduled = new int[EventType.values().length];
+        Arrays.fill(lastScheduled, -1);
+        this.processedEvents = 0;
+    }
+
+    // Adds an event unless the same type is already scheduled for that tick
+    public void schedule(int tick, EventType type) {
+        if (lastScheduled[type.ordinal()] == tick) {
+            return;
+        }
+        lastScheduled[type.ordinal()] = tick;
+        events.add(new Event(tick, type));
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    // Tick of the earliest event, or Integer.MAX_VALUE if nothing is scheduled
+    public int peekTick() {
+        Event next = events.peek();
+        return next != null ? next.tick : Integer.MAX_VALUE;
+    }
+
+    // Removes every event due at the earliest tick and returns that tick
+    public int pollTick() {
+        int tick = events.poll().tick;
+        processedEvents++;
+        while (!events.isEmpty() && events.peek().tick == tick) {
+            events.poll();
+            processedEvents++;
+        }
+        return tick;
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeLong(processedEvents);
+        for (int tick : lastScheduled) {
+            out.writeInt(tick);
+        }
+        out.writeInt(events.size());
+        for (Event event : events) {
+            out.writeInt(event.tick);
+            out.writeByte(event.type.ordinal());
+        }
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        processedEvents = in.readLong();
+        for (int i = 0; i < lastScheduled.length; i++) {
+            lastScheduled[i] = in.readInt();
+        }
+        EventType[] types = EventType.values();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int tick = in.readInt();
+            events.add(new Event(tick, types[in.readByte()]));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Compact binary journal of every state transition of a run, appended through a
+// memory-mapped window that is remapped further along the file as it fills up.
+//
+// File layout: int magic, int version, long seed, long record count (-1 until closed),
+// int config text length, config text (UTF-8), then fixed-size records of
+// int tick, int parcel number, int city id, byte type, byte priority, byte size index.
+public class EventJournal {
+    public enum Type { TICK, ENQUEUE, DISCARD, SORT, REPROCESS, ROTATE, DISPATCH, RETURN, SKIP }
+
+    private static final int MAGIC = 0x50534A31;  // "PSJ1"
+    private static final int VERSION = 2;
+    private static final int RECORD_COUNT_OFFSET = 16;
+    public static final int RECORD_BYTES = 15;
+    public static final int DEFAULT_WINDOW_RECORDS = 1 << 16;
+
+    private static final Type[] TYPES = Type.values();
+
+    private final FileChannel channel;
+    private final long dataStart;
+    private final int windowBytes;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long recordCount;
+
+    // City ids are CityDictionary ids of the configuration stored in the header
+    public EventJournal(String filename, long seed, String configText) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        byte[] text = configText.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header = ByteBuffer.allocate(28 + text.length);
+        header.putInt(MAGIC).putInt(VERSION).putLong(seed).putLong(-1).putInt(text.length).put(text);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+
+        this.dataStart = header.limit();
+        this.windowBytes = DEFAULT_WINDOW_RECORDS * RECORD_BYTES;
+        this.windowStart = dataStart;
+        this.window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, windowBytes);
+        this.recordCount = 0;
+    }
+
+    // cityId is -1 for records without a city
+    public void append(Type type, int tick, int parcelNumber, int cityId, int priority, int sizeIndex) {
+        if (!window.hasRemaining()) {
+            try {
+                windowStart += windowBytes;
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, windowBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error extending journal file", e);
+            }
+        }
+        window.putInt(tick).putInt(parcelNumber).putInt(cityId)
+              .put((byte) type.ordinal()).put((byte) priority).put((byte) sizeIndex);
+        recordCount++;
+    }
+
+    // parcel is a handle in parcels, or ParcelStore.NONE for records that only concern a terminal
+    public void append(Type type, int tick, ParcelStore parcels, int parcel, int cityId) {
+        if (parcel == ParcelStore.NONE) {
+            append(type, tick, 0, cityId, 0, 0);
+        } else {
+            append(type, tick, parcels.getParcelNumber(parcel), cityId, parcels.getPriority(parcel),
+                   parcels.getSizeIndex(parcel));
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    // Cuts the unused end of the last window and stores the record count in the header
+    public void close() throws IOException {
+        window.force();
+        ByteBuffer count = ByteBuffer.allocate(8).putLong(0, recordCount);
+        channel.write(count, RECORD_COUNT_OFFSET);
+        channel.truncate(dataStart + recordCount * RECORD_BYTES);
+        channel.close();
+    }
+
+    // Sequential reader; the fields of the current record are valid after next() returns true
+    public static class Reader {
+        private final FileChannel channel;
+        private final long seed;
+        private final String configText;
+        private final long dataEnd;
+        private MappedByteBuffer window;
+        private long windowEnd;
+
+        private Type type;
+        private int tick;
+        private int parcelNumber;
+        private int cityId;
+        private int priority;
+        private int sizeIndex;
+
+        public Reader(String filename) throws IOException {
+            this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(28);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < 28 || header.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not a ParcelSortX journal: " + filename);
+            }
+            if (header.getInt() != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported journal version: " + filename);
+            }
+            this.seed = header.getLong();
+            long recordCount = header.getLong();
+            byte[] text = new byte[header.getInt()];
+            channel.read(ByteBuffer.wrap(text), 28);
+            this.configText = new String(text, StandardCharsets.UTF_8);
+
+            long dataStart = 28 + text.length;
+            if (recordCount < 0) {
+                // The writer did not close the journal; read every complete record
+                recordCount = (channel.size() - dataStart) / RECORD_BYTES;
+            }
+            this.dataEnd = dataStart + recordCount * RECORD_BYTES;
+            this.windowEnd = dataStart;
+            this.window = null;
+        }
+
+        public boolean next() throws IOException {
+            if (window == null || !window.hasRemaining()) {
+                if (windowEnd >= dataEnd) {
+                    return false;
+                }
+                long size = Math.min((long) DEFAULT_WINDOW_RECORDS * RECORD_BYTES * 16, dataEnd - windowEnd);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, size);
+                windowEnd += size;
+            }
+            tick = window.getInt();
+            parcelNumber = window.getInt();
+            cityId = window.getInt();
+            type = TYPES[window.get()];
+            priority = window.get();
+            sizeIndex = window.get();
+            return true;
+        }
+
+        public long getSeed() { return seed; }
+        public String getConfigText() { return configText; }
+        public Type getType() { return type; }
+        public int getTick() { return tick; }
+        public int getParcelNumber() { return parcelNumber; }
+        public int getCityId() { return cityId; }  // -1 when the record has no city
+        public int getPriority() { return priority; }
+        public int getSizeIndex() { return sizeIndex; }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Resizable open-addressing index from parcel numbers to ParcelStore handles; the records
+// themselves are the store rows. Without a cold tier every row stays in place for the whole
+// run. With one, a retired parcel's record is appended to the ColdParcelArchive and dropped
+// from the index, so the index and the store only hold parcels still in flight; ID lookups
+// fall through to the archive.
+public class HeapParcelTracker implements ParcelTracker {
+    private static final int EMPTY = -1;
+
+    private final ParcelStore parcels;
+    // Linear probing; keys[i] == EMPTY marks a free slot
+    private int[] keys;
+    private int[] handles;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+    private double maxLoadFactor;
+    private final ColdParcelArchive cold;  // null: no tiering
+
+    public HeapParcelTracker(ParcelStore parcels) {
+        this(parcels, DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_LOAD_FACTOR, null);
+    }
+
+    public HeapParcelTracker(ParcelStore parcels, int initialCapacity, double maxLoadFactor,
+                             ColdParcelArchive cold) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        if (maxLoadFactor <= 0 || maxLoadFactor >= 1) {
+            throw new IllegalArgumentException("Max load factor must be in (0, 1): " + maxLoadFactor);
+        }
+
+        this.parcels = parcels;
+        this.maxLoadFactor = maxLoadFactor;
+        this.cold = cold;
+        this.size = 0;
+        allocateTable(tableSizeFor(initialCapacity));
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int n = 1;
+        while (n < capacity) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private void allocateTable(int capacity) {
+        this.keys = new int[capacity];
+        this.handles = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int) (capacity * maxLoadFactor);
+    }
+
+    private int hash(int key) {
+        // Fibonacci hashing spreads sequential parcel numbers across the table
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // Returns the slot holding key, or the free slot where it would be inserted
+    private int findSlot(int key) {
+        int index = hash(key);
+        while (keys[index] != EMPTY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    // Handle of a tracked parcel still in the index, or ParcelStore.NONE (also while the parcel
+    // is spilled to disk)
+    public int find(String parcelID) {
+        int index = findSlot(ParcelTracker.parseKey(parcelID));
+        return keys[index] != EMPTY ? handles[index] : ParcelStore.NONE;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        int[] oldHandles = handles;
+        allocateTable(oldKeys.length << 1);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = findSlot(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                handles[index] = oldHandles[i];
+            }
+        }
+    }
+
+    public void insert(int handle) {
+        int key = parcels.getParcelNumber(handle);
+        int index = findSlot(key);
+        if (keys[index] != EMPTY) {
+            return; // Avoid duplicates
+        }
+
+        if (size + 1 > resizeThreshold) {
+            resize();
+            index = findSlot(key);
+        }
+
+        keys[index] = key;
+        handles[index] = handle;
+        size++;
+    }
+
+    public void markSorted(int handle) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Sorted);
+    }
+
+    public int markReturned(int handle) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Returned);
+        return parcels.incrementReturnCount(handle);
+    }
+
+    // With a cold tier the finished record moves there and leaves the index
+    public boolean markDispatched(int handle, int dispatchTick) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Dispatched);
+        parcels.setDispatchTick(handle, dispatchTick);
+        if (cold == null) {
+            return false;
+        }
+        cold.append(parcels, handle);
+        remove(parcels.getParcelNumber(handle));
+        return true;
+    }
+
+    // The entry stays in the index without a row until relocate
+    public void detach(int handle) {
+        int index = findSlot(parcels.getParcelNumber(handle));
+        if (keys[index] != EMPTY) {
+            handles[index] = ParcelStore.NONE;
+        }
+    }
+
+    public void relocate(int handle) {
+        int index = findSlot(parcels.getParcelNumber(handle));
+        if (keys[index] != EMPTY) {
+            handles[index] = handle;
+        }
+    }
+
+    // Backward-shift deletion: later entries of the probe run move up into the gap, so lookups
+    // never need tombstones
+    private void remove(int key) {
+        int gap = findSlot(key);
+        if (keys[gap] == EMPTY) {
+            return;
+        }
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            if (keys[index] == EMPTY) {
+                break;
+            }
+            int home = hash(keys[index]);
+            // Move the entry unless its home slot lies cyclically in (gap, index]
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                handles[gap] = handles[index];
+                gap = index;
+            }
+        }
+        keys[gap] = EMPTY;
+        size--;
+    }
+
+    public ColdParcelArchive getColdTier() {
+        return cold;
+    }
+
+    public void updateStatus(String parcelID, Parcel.ParcelStatus newStatus) {
+        int handle = find(parcelID);
+        if (handle != ParcelStore.NONE) {
+            parcels.setStatus(handle, newStatus);
+        }
+    }
+
+    // Archived records are final, so the ID-based updates only apply to parcels in the index
+    public Parcel get(String parcelID) {
+        int handle = find(parcelID);
+        if (handle != ParcelStore.NONE) {
+            return parcels.toParcel(handle);
+        }
+        return cold != null ? cold.get(ParcelTracker.parseKey(parcelID)) : null;
+    }
+
+    public void incrementReturnCount(String parcelID) {
+        int handle = find(parcelID);
+        if (handle != ParcelStore.NONE) {
+            parcels.incrementReturnCount(handle);
+        }
+    }
+
+    public boolean exists(String parcelID) {
+        int key = ParcelTracker.parseKey(parcelID);
+        return keys[findSlot(key)] != EMPTY || cold != null && cold.contains(key);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public double getLoadFactor() {
+        return (double) size / keys.length;
+    }
+
+    public void setDispatchTick(String parcelID, int dispatchTick) {
+        int handle = find(parcelID);
+        if (handle != ParcelStore.NONE) {
+            parcels.setDispatchTick(handle, dispatchTick);
+        }
+    }
+
+    public int getProcessingDelay(String parcelID) {
+        int handle = find(parcelID);
+        if (handle == ParcelStore.NONE) {
+            return cold != null ? cold.getProcessingDelay(ParcelTracker.parseKey(parcelID)) : -1;
+        }
+        if (parcels.getDispatchTick(handle) != -1) {
+            return parcels.getDispatchTick(handle) - parcels.getArrivalTick(handle);
+        }
+        return -1;
+    }
+
+    public int getReturnCount(String parcelID) {
+        int handle = find(parcelID);
+        if (handle == ParcelStore.NONE) {
+            return cold != null ? cold.getReturnCount(ParcelTracker.parseKey(parcelID)) : 0;
+        }
+        return parcels.getReturnCount(handle);
+    }
+
+    // Table size and the (key, handle) pairs, then the cold tier; the other records are in the
+    // ParcelStore section
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(keys.length);
+        out.writeInt(size);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                out.writeInt(keys[i]);
+                out.writeInt(handles[i]);
+            }
+        }
+        if (cold != null) {
+            cold.writeSnapshot(out);
+        }
+    }
+
+    // Replaces the contents with the snapshot's, keeping its table size
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        allocateTable(in.readInt());
+        size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            int key = in.readInt();
+            int index = findSlot(key);
+            keys[index] = key;
+            handles[index] = in.readInt();
+        }
+        if (cold != null) {
+            cold.readSnapshot(in);
+        }
+    }
+
+    public void close() throws IOException {
+        if (cold != null) {
+            cold.close();
+        }
+    }
+}
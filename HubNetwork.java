@@ -0,0 +1,248 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Weighted undirected graph of hubs, each delivering to some of the CITY_LIST cities, loaded
+// from NETWORK_FILE. A parcel for another hub's city is forwarded along the shortest path by
+// transit ticks. Dijkstra runs for a source hub the first time that hub routes a parcel, and
+// its next-hop and distance rows are cached until a link changes. Only hub h reads or fills
+// row h, so the hubs' parallel ticks can fill the cache without locking; links only change
+// between ticks.
+//
+// File format, one entry per line:
+//   HUB=<name>:<city>,<city>,...
+//   LINK=<hub>,<hub>,<transit ticks>
+//   LINK_CHANGE=<tick>,<hub>,<hub>,<transit ticks>   (0 closes the link from that tick on)
+public class HubNetwork {
+    public static final int NO_ROUTE = -1;
+
+    private final String[] hubNames;
+    private final String[][] hubCities;
+    private final int[] homeHubs;            // Hub that delivers each city, by city id
+    private final int[][] weights;           // Transit ticks between hubs, 0 without a link
+    private final int[][] nextHops;          // Route cache by source hub, null until computed
+    private final int[][] distances;
+    private final int[][] linkChanges;       // tick, hub, hub, ticks; in tick order
+    private int nextChange;
+    private final AtomicInteger routeComputations = new AtomicInteger();
+    private int invalidations;
+
+    private HubNetwork(List<String> names, List<String[]> cities, CityDictionary dictionary,
+                       List<int[]> links, List<int[]> changes) throws IOException {
+        int hubCount = names.size();
+        this.hubNames = names.toArray(new String[0]);
+        this.hubCities = cities.toArray(new String[0][]);
+        this.homeHubs = new int[dictionary.size()];
+        Arrays.fill(homeHubs, NO_ROUTE);
+        for (int hub = 0; hub < hubCount; hub++) {
+            for (String city : hubCities[hub]) {
+                int cityId = dictionary.getId(city);
+                if (cityId < 0) {
+                    throw new IOException("Hub " + hubNames[hub] + " delivers to " + city + ", which is not in CITY_LIST");
+                }
+                homeHubs[cityId] = hub;
+            }
+        }
+        for (int cityId = 0; cityId < homeHubs.length; cityId++) {
+            if (homeHubs[cityId] == NO_ROUTE) {
+                throw new IOException("No hub delivers to " + dictionary.getName(cityId));
+            }
+        }
+
+        this.weights = new int[hubCount][hubCount];
+        for (int[] link : links) {
+            weights[link[0]][link[1]] = link[2];
+            weights[link[1]][link[0]] = link[2];
+        }
+        this.nextHops = new int[hubCount][];
+        this.distances = new int[hubCount][];
+        changes.sort((a, b) -> Integer.compare(a[0], b[0]));
+        this.linkChanges = changes.toArray(new int[0][]);
+        this.nextChange = 0;
+    }
+
+    public static HubNetwork load(String filename, CityDictionary cities) throws IOException {
+        List<String> names = new ArrayList<>();
+        List<String[]> hubCities = new ArrayList<>();
+        List<String[]> linkLines = new ArrayList<>();
+        List<String[]> changeLines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("=");
+                if (parts.length != 2) {
+                    throw new IOException("Invalid network line: " + line);
+                }
+                String value = parts[1].trim();
+                switch (parts[0].trim()) {
+                    case "HUB":
+                        int colon = value.indexOf(':');
+                        if (colon < 0) {
+                            throw new IOException("Hub without cities: " + value);
+                        }
+                        names.add(value.substring(0, colon).trim());
+                        hubCities.add(splitList(value.substring(colon + 1)));
+                        break;
+                    case "LINK":
+                        linkLines.add(splitList(value));
+                        break;
+                    case "LINK_CHANGE":
+                        changeLines.add(splitList(value));
+                        break;
+                    default:
+                        throw new IOException("Unknown network key: " + parts[0].trim());
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IOException("Network file defines no hubs: " + filename);
+        }
+
+        // Links may name hubs defined further down the file
+        Map<String, Integer> hubIds = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            hubIds.put(names.get(i), i);
+        }
+        List<int[]> links = new ArrayList<>();
+        for (String[] fields : linkLines) {
+            links.add(parseLink(fields, 0, hubIds));
+        }
+        List<int[]> changes = new ArrayList<>();
+        for (String[] fields : changeLines) {
+            int[] link = parseLink(fields, 1, hubIds);
+            changes.add(new int[] {Integer.parseInt(fields[0]), link[0], link[1], link[2]});
+        }
+        return new HubNetwork(names, hubCities, cities, links, changes);
+    }
+
+    private static String[] splitList(String value) {
+        String[] items = value.split(",");
+        for (int i = 0; i < items.length; i++) {
+            items[i] = items[i].trim();
+        }
+        return items;
+    }
+
+    // hub, hub, transit ticks from fields[offset]
+    private static int[] parseLink(String[] fields, int offset, Map<String, Integer> hubIds) throws IOException {
+        if (fields.length != offset + 3) {
+            throw new IOException("Invalid link: " + String.join(",", fields));
+        }
+        Integer a = hubIds.get(fields[offset]);
+        Integer b = hubIds.get(fields[offset + 1]);
+        if (a == null || b == null || a.equals(b)) {
+            throw new IOException("Invalid link between " + fields[offset] + " and " + fields[offset + 1]);
+        }
+        int ticks = Integer.parseInt(fields[offset + 2]);
+        if (ticks < 0) {
+            throw new IOException("Negative transit ticks: " + String.join(",", fields));
+        }
+        return new int[] {a, b, ticks};
+    }
+
+    // Sets the transit ticks of a link (0 removes it) and drops every cached route
+    public void setLink(int hubA, int hubB, int ticks) {
+        weights[hubA][hubB] = ticks;
+        weights[hubB][hubA] = ticks;
+        Arrays.fill(nextHops, null);
+        Arrays.fill(distances, null);
+        invalidations++;
+    }
+
+    // Applies the LINK_CHANGE entries due by tick; called between ticks. Returns how many.
+    public int applyLinkChanges(int tick) {
+        int applied = 0;
+        while (nextChange < linkChanges.length && linkChanges[nextChange][0] <= tick) {
+            int[] change = linkChanges[nextChange++];
+            setLink(change[1], change[2], change[3]);
+            applied++;
+        }
+        return applied;
+    }
+
+    // Neighbour of source on the shortest path to target, source itself when they are equal,
+    // or NO_ROUTE when target cannot be reached
+    public int nextHop(int source, int target) {
+        return routes(source)[target];
+    }
+
+    // Transit ticks of the shortest path, or Integer.MAX_VALUE when target cannot be reached
+    public int getDistance(int source, int target) {
+        routes(source);
+        return distances[source][target];
+    }
+
+    private int[] routes(int source) {
+        int[] hops = nextHops[source];
+        if (hops == null) {
+            hops = computeRoutes(source);
+        }
+        return hops;
+    }
+
+    // Dijkstra over the adjacency matrix, O(V^2), which suits the few, densely linked hubs of a
+    // network; ties go to the lower hub index, so routes are reproducible
+    private int[] computeRoutes(int source) {
+        int hubCount = hubNames.length;
+        int[] distance = new int[hubCount];
+        int[] firstHop = new int[hubCount];
+        boolean[] settled = new boolean[hubCount];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(firstHop, NO_ROUTE);
+        distance[source] = 0;
+        firstHop[source] = source;
+
+        while (true) {
+            int hub = NO_ROUTE;
+            for (int i = 0; i < hubCount; i++) {
+                if (!settled[i] && distance[i] != Integer.MAX_VALUE && (hub == NO_ROUTE || distance[i] < distance[hub])) {
+                    hub = i;
+                }
+            }
+            if (hub == NO_ROUTE) {
+                break;
+            }
+            settled[hub] = true;
+            for (int neighbour = 0; neighbour < hubCount; neighbour++) {
+                int ticks = weights[hub][neighbour];
+                if (ticks > 0 && !settled[neighbour] && distance[hub] + ticks < distance[neighbour]) {
+                    distance[neighbour] = distance[hub] + ticks;
+                    firstHop[neighbour] = hub == source ? neighbour : firstHop[hub];
+                }
+            }
+        }
+
+        distances[source] = distance;
+        nextHops[source] = firstHop;
+        routeComputations.incrementAndGet();
+        return firstHop;
+    }
+
+    // Parcel numbers of hub h start above h times the largest power of ten that fits every hub
+    // into the int range, so numbers stay unique when parcels change hubs
+    public int getParcelNumberBase(int hub) {
+        int block = 1;
+        while (block <= Integer.MAX_VALUE / hubNames.length / 10) {
+            block *= 10;
+        }
+        return hub * block;
+    }
+
+    public int getHubCount() { return hubNames.length; }
+    public String getHubName(int hub) { return hubNames[hub]; }
+    public String[] getHubCities(int hub) { return hubCities[hub]; }
+    public int getHomeHub(int cityId) { return homeHubs[cityId]; }
+    public int getLinkTicks(int hubA, int hubB) { return weights[hubA][hubB]; }
+    public int getRouteComputations() { return routeComputations.get(); }
+    public int getInvalidations() { return invalidations; }
+}
@@ -0,0 +1,58 @@
+import java.util.concurrent.atomic.AtomicReference;
+
+// Lock-free multi-producer / single-consumer queue of parcels travelling to one hub. While the
+// hubs' ticks run in parallel, a sending hub links its transfer in with a single atomic
+// exchange on tail; only the receiving hub takes transfers from head, at the start of its next
+// tick. The consumed node stays behind as the new head, so no node is ever unlinked while a
+// producer may still point at it.
+public class HubTransferQueue {
+    public static final class Transfer {
+        final int parcelNumber;
+        final int cityId;
+        final int priority;
+        final int sizeIndex;
+        final int dueTick;       // Tick at which the parcel reaches the receiving hub
+        final int originTick;    // Arrival tick at the parcel's first hub
+        final int hops;          // Links travelled, including this one
+        final int sourceHub;
+        final long sequence;     // Order among the sending hub's transfers
+        volatile Transfer next;
+
+        Transfer(int parcelNumber, int cityId, int priority, int sizeIndex, int dueTick, int originTick,
+                 int hops, int sourceHub, long sequence) {
+            this.parcelNumber = parcelNumber;
+            this.cityId = cityId;
+            this.priority = priority;
+            this.sizeIndex = sizeIndex;
+            this.dueTick = dueTick;
+            this.originTick = originTick;
+            this.hops = hops;
+            this.sourceHub = sourceHub;
+            this.sequence = sequence;
+        }
+    }
+
+    private final AtomicReference<Transfer> tail;
+    private Transfer head;  // Last consumed node
+
+    public HubTransferQueue() {
+        this.head = new Transfer(0, 0, 0, 0, 0, 0, 0, -1, -1);
+        this.tail = new AtomicReference<>(head);
+    }
+
+    // Any thread
+    public void push(Transfer transfer) {
+        Transfer previous = tail.getAndSet(transfer);
+        previous.next = transfer;  // Until this store the consumer sees the queue end at previous
+    }
+
+    // Receiving hub only; null when empty or when the newest push is not linked in yet
+    public Transfer poll() {
+        Transfer next = head.next;
+        if (next == null) {
+            return null;
+        }
+        head = next;
+        return next;
+    }
+}
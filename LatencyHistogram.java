@@ -0,0 +1,63 @@
+// Log-linear histogram of durations in nanoseconds: exact below 64 ns, then 32 buckets per
+// power of two, so a percentile is within about 3% of the recorded value while the memory
+// stays fixed however many values are recorded. Single writer.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;  // Values below are counted exactly
+
+    private final long[] counts = new long[LINEAR_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    private static int index(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int highestBit = 63 - Long.numberOfLeadingZeros(value);
+        int shift = highestBit - SUB_BUCKET_BITS;
+        int top = (int) (value >>> shift);  // In [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        return LINEAR_LIMIT + (highestBit - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    // Largest value that falls into the bucket
+    private static long highestValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int bucket = index - LINEAR_LIMIT;
+        int shift = bucket / SUB_BUCKETS + 1;
+        long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    // Smallest recorded value that at least percentile % of the values do not exceed, rounded
+    // up to its bucket; 0 when nothing was recorded
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getCount() { return count; }
+    public long getMax() { return max; }
+    public double getMean() { return count > 0 ? (double) sum / count : 0; }
+}
@@ -0,0 +1,85 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves SimulationMetrics at http://localhost:<port>/metrics in the Prometheus text format.
+// Requests are handled on one daemon thread and only read the metrics.
+public class MetricsHttpServer {
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final SimulationMetrics metrics;
+
+    public MetricsHttpServer(int port, SimulationMetrics metrics) throws IOException {
+        this.metrics = metrics;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render() {
+        StringBuilder text = new StringBuilder(1024);
+        metric(text, "parcelsortx_parcels_generated_total", "counter", "Parcels accepted into the arrival queue",
+               metrics.getParcelsGenerated());
+        metric(text, "parcelsortx_parcels_dispatched_total", "counter", "Parcels dispatched to their terminal",
+               metrics.getParcelsDispatched());
+        metric(text, "parcelsortx_parcels_returned_total", "counter", "Misrouted parcels pushed to the return stack",
+               metrics.getParcelsReturned());
+        metric(text, "parcelsortx_parcels_discarded_total", "counter", "Parcels discarded on queue overflow",
+               metrics.getParcelsDiscarded());
+        metric(text, "parcelsortx_tick", "gauge", "Current simulation tick", metrics.getCurrentTick());
+        metric(text, "parcelsortx_tick_rate", "gauge", "Simulated ticks per second", metrics.getTickRate());
+        metric(text, "parcelsortx_queue_depth", "gauge", "Parcels in the arrival queue", metrics.getQueueDepth());
+        metric(text, "parcelsortx_stack_depth", "gauge", "Parcels in the return stack", metrics.getStackDepth());
+        metric(text, "parcelsortx_tracker_load_factor", "gauge", "Load factor of the parcel tracker hash table",
+               metrics.getTrackerLoadFactor());
+
+        header(text, "parcelsortx_city_backlog", "gauge", "Parcels waiting in the BST per destination city");
+        for (Map.Entry<String, Integer> entry : metrics.getCityBacklog().entrySet()) {
+            text.append("parcelsortx_city_backlog{city=\"").append(escapeLabel(entry.getKey())).append("\"} ")
+                .append(entry.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, Number value) {
+        header(text, name, type, help);
+        text.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+    }
+}
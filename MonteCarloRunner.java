@@ -0,0 +1,189 @@
+import java.io.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Runs independent replications of the simulation in parallel and reports the mean,
+// standard deviation and 95% confidence interval of the key results. Replication i
+// always gets the i-th seed drawn from the base seed, so a study is reproducible
+// and any single replication can be rerun on its own with RANDOM_SEED.
+//
+// Usage: java MonteCarloRunner [config.txt] [replications] [baseSeed] [parallelism] [outputDir]
+public class MonteCarloRunner {
+    // Two-sided 95% Student t critical values for 1..30 degrees of freedom
+    private static final double[] T_95 = {
+        12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+        2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+        2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+    };
+
+    private static final String[] METRICS = {
+        "Parcels Generated", "Parcels Dispatched", "Parcels Discarded", "Parcels Returned", "Mean Delay (ticks)"
+    };
+
+    private final Configuration config;
+    private final int replications;
+    private final long baseSeed;
+    private final int parallelism;
+    private final File outputDir;  // Per-replication logs and reports; null keeps them in memory only
+
+    private final long[] seeds;
+    private final double[][] results;  // [replication][metric]
+
+    // Runs one replication; results are written to its own row, so no locking is needed
+    private class Replication extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+
+        Replication(int index) {
+            this.index = index;
+        }
+
+        protected void compute() {
+            String logFile = null;
+            String reportFile = null;
+            if (outputDir != null) {
+                logFile = new File(outputDir, "log-" + index + ".txt").getPath();
+                reportFile = new File(outputDir, "report-" + index + ".txt").getPath();
+            }
+
+            ParcelSortXSimulation simulation = new ParcelSortXSimulation(config, seeds[index], logFile,
+                                                                       reportFile, false);
+            simulation.runSimulation();
+
+            double[] row = results[index];
+            row[0] = simulation.getTotalParcelsGenerated();
+            row[1] = simulation.getTotalDispatched();
+            row[2] = simulation.getTotalParcelsDiscarded();
+            row[3] = simulation.getTotalReturned();
+            row[4] = simulation.getStatistics().getOverall().getMean();
+        }
+    }
+
+    public MonteCarloRunner(Configuration config, int replications, long baseSeed, int parallelism, File outputDir) {
+        if (replications <= 0 || parallelism <= 0) {
+            throw new IllegalArgumentException("Replications and parallelism must be positive");
+        }
+        this.config = config;
+        this.replications = replications;
+        this.baseSeed = baseSeed;
+        this.parallelism = parallelism;
+        this.outputDir = outputDir;
+
+        this.seeds = new long[replications];
+        SplittableRandom seedStream = new SplittableRandom(baseSeed);
+        for (int i = 0; i < replications; i++) {
+            seeds[i] = seedStream.nextLong();
+        }
+        this.results = new double[replications][METRICS.length];
+    }
+
+    public void run() {
+        Replication[] tasks = new Replication[replications];
+        for (int i = 0; i < replications; i++) {
+            tasks[i] = new Replication(i);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public long getSeed(int replication) {
+        return seeds[replication];
+    }
+
+    public double getResult(int replication, int metric) {
+        return results[replication][metric];
+    }
+
+    public double getMean(int metric) {
+        double sum = 0;
+        for (double[] row : results) {
+            sum += row[metric];
+        }
+        return sum / replications;
+    }
+
+    public double getStdDev(int metric) {
+        if (replications < 2) {
+            return 0;
+        }
+        double mean = getMean(metric);
+        double sum = 0;
+        for (double[] row : results) {
+            sum += (row[metric] - mean) * (row[metric] - mean);
+        }
+        return Math.sqrt(sum / (replications - 1));
+    }
+
+    // Half-width of the 95% confidence interval for the metric's mean
+    public double getConfidenceHalfWidth(int metric) {
+        if (replications < 2) {
+            return 0;
+        }
+        int degreesOfFreedom = replications - 1;
+        double critical = degreesOfFreedom <= T_95.length ? T_95[degreesOfFreedom - 1] : 1.96;
+        return critical * getStdDev(metric) / Math.sqrt(replications);
+    }
+
+    public void writeSummary(PrintWriter writer) {
+        writer.println("=== Monte Carlo Summary ===");
+        writer.println("Replications: " + replications + ", Base Seed: " + baseSeed +
+                      ", Parallelism: " + parallelism);
+        writer.println();
+        writer.println(String.format("%-20s %12s %12s %26s", "Metric", "Mean", "Std Dev", "95% CI"));
+        for (int metric = 0; metric < METRICS.length; metric++) {
+            double mean = getMean(metric);
+            double halfWidth = getConfidenceHalfWidth(metric);
+            writer.println(String.format("%-20s %12.2f %12.2f   [%10.2f, %10.2f]", METRICS[metric], mean,
+                                         getStdDev(metric), mean - halfWidth, mean + halfWidth));
+        }
+        writer.println();
+        writer.println("Replication seeds:");
+        for (int i = 0; i < replications; i++) {
+            writer.println(String.format("   %4d: %d  (dispatched %.0f, mean delay %.2f)", i, seeds[i],
+                                         results[i][1], results[i][4]));
+        }
+        writer.flush();
+    }
+
+    public static void main(String[] args) {
+        String configFile = args.length > 0 ? args[0] : "config.txt";
+        int replications = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        long baseSeed = args.length > 2 ? Long.parseLong(args[2]) : System.nanoTime();
+        int parallelism = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        File outputDir = args.length > 4 ? new File(args[4]) : null;
+
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Error creating output directory: " + outputDir);
+            return;
+        }
+
+        // Replication output stays in memory unless an output directory is given
+        Configuration config = new Configuration(configFile);
+        if (config.getTrackerFile() != null) {
+            // Every replication would map the same file
+            System.err.println("TRACKER_FILE is not supported in Monte Carlo runs");
+            return;
+        }
+        MonteCarloRunner runner = new MonteCarloRunner(config, replications, baseSeed, parallelism, outputDir);
+        long start = System.nanoTime();
+        runner.run();
+        System.out.println(String.format("Completed %d replications in %.2f s", replications,
+                                         (System.nanoTime() - start) / 1e9));
+
+        runner.writeSummary(new PrintWriter(System.out));
+        String summaryFile = outputDir != null ? new File(outputDir, "summary.txt").getPath() : "montecarlo.txt";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(summaryFile))) {
+            runner.writeSummary(writer);
+        } catch (IOException e) {
+            System.err.println("Error writing summary: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+// Lock-free multi-producer / single-consumer variant of ArrivalBuffer.
+// Producers claim sequence numbers on tail and publish into their own slot;
+// the single consumer advances head and waits for a claimed slot to be published.
+// Slots hold ParcelStore handles; ParcelStore.NONE marks a slot that is not published yet.
+public class MpscArrivalBuffer implements ArrivalQueue {
+    private final AtomicIntegerArray slots;
+    private final AtomicLong head;
+    private final AtomicLong tail;
+    private final int capacity;
+
+    public MpscArrivalBuffer(int capacity) {
+        this.capacity = capacity;
+        this.slots = new AtomicIntegerArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots.set(i, ParcelStore.NONE);
+        }
+        this.head = new AtomicLong(0);
+        this.tail = new AtomicLong(0);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    // Claims and publishes a single slot; returns false when the buffer is full
+    public boolean offer(int parcel) {
+        long sequence = claim(1);
+        if (sequence < 0) {
+            return false;
+        }
+        publish(sequence, parcel);
+        return true;
+    }
+
+    // Reserves count consecutive slots and returns the first sequence, or -1 if they do not fit
+    public long claim(int count) {
+        while (true) {
+            long current = tail.get();
+            if (current + count - head.get() > capacity) {
+                return -1;
+            }
+            if (tail.compareAndSet(current, current + count)) {
+                return current;
+            }
+        }
+    }
+
+    // Fills a previously claimed slot; safe to call concurrently for distinct sequences
+    public void publish(long sequence, int parcel) {
+        slots.set(index(sequence), parcel);
+    }
+
+    // Reads a published slot without consuming it
+    public int peekAt(long sequence) {
+        return slots.get(index(sequence));
+    }
+
+    public void enqueue(int parcel) {
+        if (!offer(parcel)) {
+            System.out.println("WARNING: Queue overflow - discarding parcel handle " + parcel);
+        }
+    }
+
+    // Single consumer only
+    public int dequeue() {
+        long current = head.get();
+        if (current == tail.get()) {
+            return ParcelStore.NONE;
+        }
+
+        int index = index(current);
+        int parcel;
+        while ((parcel = slots.get(index)) == ParcelStore.NONE) {
+            Thread.yield(); // Claimed but not yet published
+        }
+        slots.lazySet(index, ParcelStore.NONE);
+        head.lazySet(current + 1);
+        return parcel;
+    }
+
+    // Single consumer only
+    public int dequeueBatch(int[] target, int maxCount) {
+        int moved = 0;
+        int limit = Math.min(maxCount, target.length);
+        int parcel;
+        while (moved < limit && (parcel = dequeue()) != ParcelStore.NONE) {
+            target[moved++] = parcel;
+        }
+        return moved;
+    }
+
+    public int peek() {
+        long current = head.get();
+        return current == tail.get() ? ParcelStore.NONE : slots.get(index(current));
+    }
+
+    public boolean isFull() {
+        return size() >= capacity;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Only while no producer is running
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        long first = head.get();
+        int count = size();
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeInt(peekAt(first + i));
+        }
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        int parcels = in.readInt();
+        for (int i = 0; i < parcels; i++) {
+            enqueue(in.readInt());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+import java.util.PriorityQueue;
+
+// One hub's side of the network: its inbound transfer queue, the parcels in transit to it,
+// and the counts of parcels it forwarded, received and delivered. The hub's simulation calls
+// it from its own tick only, so apart from the inbound queue nothing here is shared. A received
+// parcel's origin tick and hop count travel in its ParcelStore row.
+public class NetworkHub {
+    private final int index;
+    private final HubNetwork network;
+    private final HubTransferQueue[] inbound;  // Every hub's inbound queue, by hub index
+    private final PriorityQueue<HubTransferQueue.Transfer> arriving;  // Drained, by due tick
+    private long nextSequence;
+
+    private int forwarded;
+    private int received;
+    private int delivered;
+    private long deliveryDelaySum;
+    private int maxDeliveryDelay;
+    private long deliveryHopSum;
+
+    public NetworkHub(int index, HubNetwork network, HubTransferQueue[] inbound) {
+        this.index = index;
+        this.network = network;
+        this.inbound = inbound;
+        // Transfers due at the same tick are taken in the same order in every run
+        this.arriving = new PriorityQueue<>((a, b) -> {
+            if (a.dueTick != b.dueTick) {
+                return Integer.compare(a.dueTick, b.dueTick);
+            }
+            if (a.sourceHub != b.sourceHub) {
+                return Integer.compare(a.sourceHub, b.sourceHub);
+            }
+            return Long.compare(a.sequence, b.sequence);
+        });
+    }
+
+    public boolean delivers(int cityId) {
+        return network.getHomeHub(cityId) == index;
+    }
+
+    // Next hub towards the city's hub, or HubNetwork.NO_ROUTE
+    public int nextHop(int cityId) {
+        return network.nextHop(index, network.getHomeHub(cityId));
+    }
+
+    // Sends a parcel that left this hub towards its city's hub; the route must exist
+    public int forward(ParcelStore parcels, int handle, int tick) {
+        int next = nextHop(parcels.getCityId(handle));
+        inbound[next].push(new HubTransferQueue.Transfer(parcels.getParcelNumber(handle), parcels.getCityId(handle),
+                                                         parcels.getPriority(handle), parcels.getSizeIndex(handle),
+                                                         tick + network.getLinkTicks(index, next),
+                                                         parcels.getOriginTick(handle),
+                                                         parcels.getHopCount(handle) + 1, index, nextSequence++));
+        forwarded++;
+        return next;
+    }
+
+    // Moves what other hubs sent since the last call into the arrival order
+    public void drainInbound() {
+        HubTransferQueue.Transfer transfer;
+        while ((transfer = inbound[index].poll()) != null) {
+            arriving.add(transfer);
+        }
+    }
+
+    // The earliest transfer due by tick, or null; it stays queued until taken
+    public HubTransferQueue.Transfer peekDue(int tick) {
+        HubTransferQueue.Transfer transfer = arriving.peek();
+        return transfer != null && transfer.dueTick <= tick ? transfer : null;
+    }
+
+    // Takes the transfer returned by peekDue once its parcel is in the hub under handle
+    public void receive(HubTransferQueue.Transfer transfer, ParcelStore parcels, int handle) {
+        arriving.poll();
+        parcels.setJourney(handle, transfer.originTick, transfer.hops);
+        received++;
+    }
+
+    // A parcel dispatched to a city this hub delivers to has reached its destination
+    public void recordDelivery(ParcelStore parcels, int handle, int tick) {
+        int delay = tick - parcels.getOriginTick(handle);
+        delivered++;
+        deliveryDelaySum += delay;
+        maxDeliveryDelay = Math.max(maxDeliveryDelay, delay);
+        deliveryHopSum += parcels.getHopCount(handle);
+    }
+
+    public int getIndex() { return index; }
+    public String getName() { return network.getHubName(index); }
+    public String getHubName(int hub) { return network.getHubName(hub); }
+    public String[] getCities() { return network.getHubCities(index); }
+    public int getParcelNumberBase() { return network.getParcelNumberBase(index); }
+    public int getForwarded() { return forwarded; }
+    public int getReceived() { return received; }
+    public int getDelivered() { return delivered; }
+    public long getDeliveryDelaySum() { return deliveryDelaySum; }
+    public int getMaxDeliveryDelay() { return maxDeliveryDelay; }
+    public long getDeliveryHopSum() { return deliveryHopSum; }
+    public int getInTransit() { return arriving.size(); }  // Call drainInbound first
+
+    public double getAverageDeliveryDelay() {
+        return delivered > 0 ? (double) deliveryDelaySum / delivered : 0;
+    }
+}
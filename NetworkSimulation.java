@@ -0,0 +1,199 @@
+import java.io.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Runs a network of hubs, one ParcelSortXSimulation each, linked as described in NETWORK_FILE.
+// Each tick runs every hub's tick in parallel on a fork-join pool. A parcel dispatched to a
+// city of another hub is pushed to the lock-free transfer queue of the next hub on its route
+// and joins that hub's queue once the link's transit ticks have passed. The join after each
+// tick is the barrier at which link changes are applied. Hub i always gets the i-th seed drawn
+// from the base seed, so a network run is reproducible.
+//
+// Usage: java NetworkSimulation [config.txt] [parallelism] [outputDir]
+public class NetworkSimulation {
+    private final Configuration config;
+    private final HubNetwork network;
+    private final long baseSeed;
+    private final int parallelism;
+    private final ParcelSortXSimulation[] hubs;
+    private final NetworkHub[] networkHubs;
+    private final HubTick[] tasks;
+    private int linkChanges;
+
+    // Runs one hub's tick; hubs only share the transfer queues and the route cache
+    private class HubTick extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int index;
+
+        HubTick(int index) {
+            this.index = index;
+        }
+
+        protected void compute() {
+            hubs[index].runTick();
+        }
+    }
+
+    // Per-hub logs and reports go to outputDir as log-<hub>.txt and report-<hub>.txt; a null
+    // outputDir keeps them in memory
+    public NetworkSimulation(Configuration config, HubNetwork network, long baseSeed, int parallelism,
+                             File outputDir) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.config = config;
+        this.network = network;
+        this.baseSeed = baseSeed;
+        this.parallelism = parallelism;
+
+        int hubCount = network.getHubCount();
+        this.hubs = new ParcelSortXSimulation[hubCount];
+        this.networkHubs = new NetworkHub[hubCount];
+        this.tasks = new HubTick[hubCount];
+        HubTransferQueue[] inbound = new HubTransferQueue[hubCount];
+        for (int i = 0; i < hubCount; i++) {
+            inbound[i] = new HubTransferQueue();
+        }
+        SplittableRandom seedStream = new SplittableRandom(baseSeed);
+        for (int i = 0; i < hubCount; i++) {
+            String logFile = null;
+            String reportFile = null;
+            if (outputDir != null) {
+                logFile = new File(outputDir, "log-" + network.getHubName(i) + ".txt").getPath();
+                reportFile = new File(outputDir, "report-" + network.getHubName(i) + ".txt").getPath();
+            }
+            networkHubs[i] = new NetworkHub(i, network, inbound);
+            hubs[i] = new ParcelSortXSimulation(config, seedStream.nextLong(), logFile, reportFile, false);
+            hubs[i].joinNetwork(networkHubs[i]);
+            tasks[i] = new HubTick(i);
+        }
+    }
+
+    public void run() {
+        for (ParcelSortXSimulation hub : hubs) {
+            hub.beginRun();
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (int tick = 1; tick <= config.getMaxTicks(); tick++) {
+                linkChanges += network.applyLinkChanges(tick);
+                for (HubTick task : tasks) {
+                    task.reinitialize();
+                }
+                pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        for (int i = 0; i < hubs.length; i++) {
+            networkHubs[i].drainInbound();  // Transfers sent in the last tick count as arriving
+            hubs[i].endRun();
+        }
+    }
+
+    public ParcelSortXSimulation getHub(int hub) {
+        return hubs[hub];
+    }
+
+    public void writeSummary(PrintWriter writer) {
+        writer.println("=== Network Summary ===");
+        writer.println("Hubs: " + hubs.length + ", Ticks: " + config.getMaxTicks() + ", Base Seed: " + baseSeed +
+                       ", Parallelism: " + parallelism);
+        StringBuilder links = new StringBuilder();
+        for (int a = 0; a < hubs.length; a++) {
+            for (int b = a + 1; b < hubs.length; b++) {
+                if (network.getLinkTicks(a, b) > 0) {
+                    links.append(links.length() > 0 ? ", " : "").append(network.getHubName(a)).append('-')
+                         .append(network.getHubName(b)).append(' ').append(network.getLinkTicks(a, b));
+                }
+            }
+        }
+        writer.println("Links at End (transit ticks): " + (links.length() > 0 ? links : "none"));
+        writer.println("Link Changes Applied: " + linkChanges + ", Routes Computed: " + network.getRouteComputations() +
+                       ", Route Cache Invalidations: " + network.getInvalidations());
+        writer.println();
+
+        writer.println(String.format("%-14s %10s %10s %10s %10s %10s %10s %12s", "Hub", "Generated", "Discarded",
+                                     "Delivered", "Forwarded", "Received", "Arriving", "Avg Delivery"));
+        long generated = 0;
+        long discarded = 0;
+        long delivered = 0;
+        long forwarded = 0;
+        long received = 0;
+        long arriving = 0;
+        long delaySum = 0;
+        long hopSum = 0;
+        int maxDelay = 0;
+        for (int i = 0; i < hubs.length; i++) {
+            NetworkHub hub = networkHubs[i];
+            writer.println(String.format("%-14s %10d %10d %10d %10d %10d %10d %12.2f", hub.getName(),
+                                         hubs[i].getTotalParcelsGenerated(), hubs[i].getTotalParcelsDiscarded(),
+                                         hub.getDelivered(), hub.getForwarded(), hub.getReceived(),
+                                         hub.getInTransit(), hub.getAverageDeliveryDelay()));
+            generated += hubs[i].getTotalParcelsGenerated();
+            discarded += hubs[i].getTotalParcelsDiscarded();
+            delivered += hub.getDelivered();
+            forwarded += hub.getForwarded();
+            received += hub.getReceived();
+            arriving += hub.getInTransit();
+            delaySum += hub.getDeliveryDelaySum();
+            hopSum += hub.getDeliveryHopSum();
+            maxDelay = Math.max(maxDelay, hub.getMaxDeliveryDelay());
+        }
+        writer.println(String.format("%-14s %10d %10d %10d %10d %10d %10d %12.2f", "Total", generated, discarded,
+                                     delivered, forwarded, received, arriving,
+                                     delivered > 0 ? (double) delaySum / delivered : 0));
+        writer.println();
+        writer.println("Delivery Time Since First Hub: average " +
+                       String.format("%.2f", delivered > 0 ? (double) delaySum / delivered : 0) + " ticks, max " +
+                       maxDelay + " ticks");
+        writer.println("Average Hops per Delivered Parcel: " +
+                       String.format("%.2f", delivered > 0 ? (double) hopSum / delivered : 0));
+        writer.flush();
+    }
+
+    public static void main(String[] args) {
+        String configFile = args.length > 0 ? args[0] : "config.txt";
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        File outputDir = args.length > 2 ? new File(args[2]) : null;
+
+        if (outputDir != null && !outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Error creating output directory: " + outputDir);
+            return;
+        }
+
+        Configuration config = new Configuration(configFile);
+        if (config.getTrackerFile() != null || config.getArrivalTrace() != null) {
+            // Every hub would open the same file
+            System.err.println("TRACKER_FILE and ARRIVAL_TRACE are not supported in network mode");
+            return;
+        }
+        HubNetwork network;
+        try {
+            network = HubNetwork.load(config.getNetworkFile(), config.getCities());
+        } catch (IOException e) {
+            System.err.println("Error reading network file: " + e.getMessage());
+            return;
+        }
+
+        // Hub output stays in memory unless an output directory is given
+        long baseSeed = config.hasRandomSeed() ? config.getRandomSeed() : System.nanoTime();
+        NetworkSimulation simulation = new NetworkSimulation(config, network, baseSeed, parallelism, outputDir);
+        long start = System.nanoTime();
+        simulation.run();
+        System.out.println(String.format("Simulated %d hubs for %d ticks in %.2f s", network.getHubCount(),
+                                         config.getMaxTicks(), (System.nanoTime() - start) / 1e9));
+
+        simulation.writeSummary(new PrintWriter(System.out));
+        String summaryFile = outputDir != null ? new File(outputDir, "network-report.txt").getPath()
+                                               : "network-report.txt";
+        try (PrintWriter writer = new PrintWriter(new FileWriter(summaryFile))) {
+            simulation.writeSummary(writer);
+        } catch (IOException e) {
+            System.err.println("Error writing network report: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,333 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// ParcelTracker whose records live outside the Java heap, in fixed-width slots addressed
+// directly by parcel number (slot n holds parcel n), so a lookup is an address computation and
+// the records add nothing to GC work however many parcels a run has. Slots come in 1.25 MB chunks
+// that are allocated when a slot in them is first used, either as direct buffers or, with a
+// tracker file, as mapped regions of that file. A file-backed tracker can outgrow RAM, and the
+// file stays behind after the run so that open() can look its parcels up again.
+//
+// File layout: int magic, int slot bytes, int record count (in a HEADER_BYTES header), then chunk
+// k at HEADER_BYTES + k * CHUNK_BYTES. Slot layout: byte state (0 = empty, else status ordinal
+// + 1), byte priority, byte size index, byte unused, int city id, int arrival tick, int dispatch
+// tick, short return count, two bytes unused.
+public class OffHeapParcelTracker implements ParcelTracker {
+    private static final int MAGIC = 0x50535854;  // "PSXT"
+    private static final int HEADER_BYTES = 64;
+    private static final int SIZE_OFFSET = 8;
+    private static final int SLOT_BYTES = 20;
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_BYTES = CHUNK_SLOTS * SLOT_BYTES;
+
+    private static final int STATE = 0;
+    private static final int PRIORITY = 1;
+    private static final int SIZE = 2;
+    private static final int CITY = 4;
+    private static final int ARRIVAL = 8;
+    private static final int DISPATCH = 12;
+    private static final int RETURNS = 16;
+
+    private static final Parcel.ParcelStatus[] STATUSES = Parcel.ParcelStatus.values();
+
+    private final ParcelStore parcels;
+    private final FileChannel channel;  // null for direct buffers
+    private final MappedByteBuffer header;
+    private ByteBuffer[] chunks;        // By chunk number, null until used
+    private int chunkCount;
+    private int size;
+
+    // Records in direct buffers, released with the tracker
+    public OffHeapParcelTracker(ParcelStore parcels) {
+        this.parcels = parcels;
+        this.channel = null;
+        this.header = null;
+        this.chunks = new ByteBuffer[16];
+    }
+
+    // Records in a new tracker file; an existing file is overwritten
+    public OffHeapParcelTracker(ParcelStore parcels, Path file) throws IOException {
+        this(parcels, FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        header.putInt(0, MAGIC);
+        header.putInt(4, SLOT_BYTES);
+        header.putInt(SIZE_OFFSET, 0);
+    }
+
+    private OffHeapParcelTracker(ParcelStore parcels, FileChannel channel) throws IOException {
+        this.parcels = parcels;
+        this.channel = channel;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+        this.chunks = new ByteBuffer[16];
+    }
+
+    // Maps the tracker file of an earlier run, e.g. after a restart, with all of its records;
+    // parcels supplies the city names for get and the rows for any further inserts
+    public static OffHeapParcelTracker open(ParcelStore parcels, Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < HEADER_BYTES) {
+            channel.close();
+            throw new IOException("Not a ParcelSortX tracker file: " + file);
+        }
+        OffHeapParcelTracker tracker = new OffHeapParcelTracker(parcels, channel);
+        if (tracker.header.getInt(0) != MAGIC || tracker.header.getInt(4) != SLOT_BYTES) {
+            channel.close();
+            throw new IOException("Not a ParcelSortX tracker file: " + file);
+        }
+        tracker.size = tracker.header.getInt(SIZE_OFFSET);
+        long fileChunks = (channel.size() - HEADER_BYTES + CHUNK_BYTES - 1) / CHUNK_BYTES;
+        for (int i = 0; i < fileChunks; i++) {
+            tracker.chunk(i);
+        }
+        return tracker;
+    }
+
+    // The chunk with this number, allocated or mapped on first use
+    private ByteBuffer chunk(int index) throws IOException {
+        if (index >= chunks.length) {
+            chunks = Arrays.copyOf(chunks, Math.max(chunks.length * 2, index + 1));
+        }
+        if (chunks[index] == null) {
+            chunks[index] = channel == null ? ByteBuffer.allocateDirect(CHUNK_BYTES)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + (long) index * CHUNK_BYTES,
+                                  CHUNK_BYTES);
+            chunkCount++;
+        }
+        return chunks[index];
+    }
+
+    // Chunk holding an existing record, or null
+    private ByteBuffer recordChunk(int parcelNumber) {
+        int index = parcelNumber >>> CHUNK_SHIFT;
+        ByteBuffer chunk = index < chunks.length ? chunks[index] : null;
+        return chunk != null && chunk.get(offset(parcelNumber) + STATE) != 0 ? chunk : null;
+    }
+
+    private static int offset(int parcelNumber) {
+        return (parcelNumber & (CHUNK_SLOTS - 1)) * SLOT_BYTES;
+    }
+
+    public void insert(int handle) {
+        int number = parcels.getParcelNumber(handle);
+        ByteBuffer chunk;
+        try {
+            chunk = chunk(number >>> CHUNK_SHIFT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error extending tracker file", e);
+        }
+        int offset = offset(number);
+        if (chunk.get(offset + STATE) != 0) {
+            return; // Avoid duplicates
+        }
+        chunk.put(offset + STATE, (byte) (parcels.getStatus(handle).ordinal() + 1));
+        chunk.put(offset + PRIORITY, (byte) parcels.getPriority(handle));
+        chunk.put(offset + SIZE, (byte) parcels.getSizeIndex(handle));
+        chunk.putInt(offset + CITY, parcels.getCityId(handle));
+        chunk.putShort(offset + RETURNS, (short) parcels.getReturnCount(handle));
+        chunk.putInt(offset + ARRIVAL, parcels.getArrivalTick(handle));
+        chunk.putInt(offset + DISPATCH, parcels.getDispatchTick(handle));
+        setSize(size + 1);
+    }
+
+    private void setSize(int size) {
+        this.size = size;
+        if (header != null) {
+            header.putInt(SIZE_OFFSET, size);
+        }
+    }
+
+    // The transitions keep the store row in step, since the row is still read by the
+    // structures that hold the parcel
+    public void markSorted(int handle) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Sorted);
+        setSlotStatus(parcels.getParcelNumber(handle), Parcel.ParcelStatus.Sorted);
+    }
+
+    public int markReturned(int handle) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Returned);
+        int returns = parcels.incrementReturnCount(handle);
+        int number = parcels.getParcelNumber(handle);
+        ByteBuffer chunk = recordChunk(number);
+        if (chunk != null) {
+            chunk.put(offset(number) + STATE, (byte) (Parcel.ParcelStatus.Returned.ordinal() + 1));
+            chunk.putShort(offset(number) + RETURNS, (short) returns);
+        }
+        return returns;
+    }
+
+    // The slot holds the whole record, so the store row is no longer needed
+    public boolean markDispatched(int handle, int dispatchTick) {
+        parcels.setStatus(handle, Parcel.ParcelStatus.Dispatched);
+        parcels.setDispatchTick(handle, dispatchTick);
+        int number = parcels.getParcelNumber(handle);
+        ByteBuffer chunk = recordChunk(number);
+        if (chunk != null) {
+            chunk.put(offset(number) + STATE, (byte) (Parcel.ParcelStatus.Dispatched.ordinal() + 1));
+            chunk.putInt(offset(number) + DISPATCH, dispatchTick);
+        }
+        return true;
+    }
+
+    // The slot is addressed by parcel number, so store rows can come and go
+    public void detach(int handle) {
+    }
+
+    public void relocate(int handle) {
+    }
+
+    public void updateStatus(String parcelID, Parcel.ParcelStatus newStatus) {
+        setSlotStatus(ParcelTracker.parseKey(parcelID), newStatus);
+    }
+
+    public Parcel get(String parcelID) {
+        int number = ParcelTracker.parseKey(parcelID);
+        ByteBuffer chunk = recordChunk(number);
+        if (chunk == null) {
+            return null;
+        }
+        int offset = offset(number);
+        int cityId = chunk.getInt(offset + CITY);
+        Parcel parcel = new Parcel(Parcel.formatID(number), cityId, parcels.getCities().getName(cityId),
+                                   chunk.get(offset + PRIORITY), Parcel.SIZES[chunk.get(offset + SIZE)],
+                                   chunk.getInt(offset + ARRIVAL));
+        parcel.setStatus(STATUSES[chunk.get(offset + STATE) - 1]);
+        return parcel;
+    }
+
+    public void incrementReturnCount(String parcelID) {
+        incrementSlotReturnCount(ParcelTracker.parseKey(parcelID));
+    }
+
+    public boolean exists(String parcelID) {
+        return recordChunk(ParcelTracker.parseKey(parcelID)) != null;
+    }
+
+    public void setDispatchTick(String parcelID, int dispatchTick) {
+        setSlotDispatchTick(ParcelTracker.parseKey(parcelID), dispatchTick);
+    }
+
+    public int getProcessingDelay(String parcelID) {
+        int number = ParcelTracker.parseKey(parcelID);
+        ByteBuffer chunk = recordChunk(number);
+        if (chunk != null && chunk.getInt(offset(number) + DISPATCH) != -1) {
+            return chunk.getInt(offset(number) + DISPATCH) - chunk.getInt(offset(number) + ARRIVAL);
+        }
+        return -1;
+    }
+
+    public int getReturnCount(String parcelID) {
+        int number = ParcelTracker.parseKey(parcelID);
+        ByteBuffer chunk = recordChunk(number);
+        return chunk != null ? chunk.getShort(offset(number) + RETURNS) : 0;
+    }
+
+    private void setSlotStatus(int parcelNumber, Parcel.ParcelStatus status) {
+        ByteBuffer chunk = recordChunk(parcelNumber);
+        if (chunk != null) {
+            chunk.put(offset(parcelNumber) + STATE, (byte) (status.ordinal() + 1));
+        }
+    }
+
+    private void setSlotDispatchTick(int parcelNumber, int dispatchTick) {
+        ByteBuffer chunk = recordChunk(parcelNumber);
+        if (chunk != null) {
+            chunk.putInt(offset(parcelNumber) + DISPATCH, dispatchTick);
+        }
+    }
+
+    // Returns the new count, which saturates at Short.MAX_VALUE; 0 for untracked parcels
+    private int incrementSlotReturnCount(int parcelNumber) {
+        ByteBuffer chunk = recordChunk(parcelNumber);
+        if (chunk == null) {
+            return 0;
+        }
+        int offset = offset(parcelNumber) + RETURNS;
+        short count = chunk.getShort(offset);
+        if (count < Short.MAX_VALUE) {
+            chunk.putShort(offset, ++count);
+        }
+        return count;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Slots in the allocated chunks
+    public int getCapacity() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) chunkCount * CHUNK_SLOTS);
+    }
+
+    public double getLoadFactor() {
+        return chunkCount > 0 ? (double) size / getCapacity() : 0;
+    }
+
+    // Record count, then every record as parcel number and slot fields in parcel number order
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(size);
+        for (int index = 0; index < chunks.length; index++) {
+            ByteBuffer chunk = chunks[index];
+            if (chunk == null) {
+                continue;
+            }
+            for (int offset = 0; offset < CHUNK_BYTES; offset += SLOT_BYTES) {
+                if (chunk.get(offset + STATE) == 0) {
+                    continue;
+                }
+                out.writeInt((index << CHUNK_SHIFT) + offset / SLOT_BYTES);
+                out.writeByte(chunk.get(offset + STATE));
+                out.writeByte(chunk.get(offset + PRIORITY));
+                out.writeByte(chunk.get(offset + SIZE));
+                out.writeInt(chunk.getInt(offset + CITY));
+                out.writeShort(chunk.getShort(offset + RETURNS));
+                out.writeInt(chunk.getInt(offset + ARRIVAL));
+                out.writeInt(chunk.getInt(offset + DISPATCH));
+            }
+        }
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        for (ByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                for (int offset = 0; offset < CHUNK_BYTES; offset += 8) {
+                    chunk.putLong(offset, 0);
+                }
+            }
+        }
+        int records = in.readInt();
+        for (int i = 0; i < records; i++) {
+            int number = in.readInt();
+            ByteBuffer chunk = chunk(number >>> CHUNK_SHIFT);
+            int offset = offset(number);
+            chunk.put(offset + STATE, (byte) in.readByte());
+            chunk.put(offset + PRIORITY, (byte) in.readByte());
+            chunk.put(offset + SIZE, (byte) in.readByte());
+            chunk.putInt(offset + CITY, in.readInt());
+            chunk.putShort(offset + RETURNS, (short) in.readShort());
+            chunk.putInt(offset + ARRIVAL, in.readInt());
+            chunk.putInt(offset + DISPATCH, in.readInt());
+        }
+        setSize(records);
+    }
+
+    // Writes a file-backed tracker through to the disk
+    public void close() throws IOException {
+        if (channel == null) {
+            chunks = new ByteBuffer[0];
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            if (chunk != null) {
+                ((MappedByteBuffer) chunk).force();
+            }
+        }
+        header.force();
+        channel.close();
+    }
+}
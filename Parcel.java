@@ -1,6 +1,10 @@
 public class Parcel {
+    public static final int PRIORITY_LEVELS = 3;  // 1 is the most urgent
+    public static final String[] SIZES = {"Small", "Medium", "Large"};
+    
     private String parcelID;
     private String destinationCity;
+    private int destinationId;  // CityDictionary id of destinationCity
     private int priority;
     private String size;
     private int arrivalTick;
@@ -10,8 +14,10 @@ public class Parcel {
         InQueue, Sorted, Dispatched, Returned
     }
     
-    public Parcel(String parcelID, String destinationCity, int priority, String size, int arrivalTick) {
+    public Parcel(String parcelID, int destinationId, String destinationCity, int priority, String size,
+                  int arrivalTick) {
         this.parcelID = parcelID;
+        this.destinationId = destinationId;
         this.destinationCity = destinationCity;
         this.priority = priority;
         this.size = size;
@@ -22,11 +28,33 @@ public class Parcel {
     // Getters
     public String getParcelID() { return parcelID; }
     public String getDestinationCity() { return destinationCity; }
+    public int getDestinationId() { return destinationId; }
     public int getPriority() { return priority; }
     public String getSize() { return size; }
     public int getArrivalTick() { return arrivalTick; }
     public ParcelStatus getStatus() { return status; }
     
+    public static String formatID(int parcelNumber) {
+        // Same as String.format("P%04d") without parsing a format string per parcel
+        String digits = Integer.toString(parcelNumber);
+        return digits.length() >= 4 ? "P" + digits : "P" + "0000".substring(digits.length()) + digits;
+    }
+    
+    // Zero-based priority level, clamped to the supported range
+    public static int priorityIndex(int priority) {
+        return Math.max(1, Math.min(PRIORITY_LEVELS, priority)) - 1;
+    }
+    
+    // Index of a size in SIZES, 0 for unknown sizes
+    public static int sizeIndex(String size) {
+        for (int i = 0; i < SIZES.length; i++) {
+            if (SIZES[i].equals(size)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+    
     // Setters
     public void setStatus(ParcelStatus status) { this.status = status; }
     
@@ -1,10 +1,15 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.util.*;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public class ParcelSortXSimulation {
     private Configuration config;
-    private ArrivalBuffer arrivalBuffer;
-    private ReturnStack returnStack;
+    private ParcelStore parcels;  // Every accepted parcel; the structures below hold its handle
+    private ArrivalQueue arrivalBuffer;
+    private ReturnScheduler returnScheduler;
     private DestinationSorter destinationSorter;
     private ParcelTracker parcelTracker;
     private TerminalRotator terminalRotator;
@@ -17,16 +22,80 @@ public class ParcelSortXSimulation {
     private int maxQueueSize;
     private int maxStackSize;
     private int currentTick;
-    private Random random;
-    private PrintWriter logWriter;
+    private StatisticsCollector statistics;
+    
+    private long randomSeed;
+    private SimulationRandom random;
+    
+    // Next tick with arrivals and its parcel count, drawn ahead so idle ticks can be skipped
+    private int nextArrivalTick;
+    private int nextArrivalCount;
+    private ArrivalSource arrivalSource;  // Recorded arrivals from ARRIVAL_TRACE, null for random traffic
+    
+    // Per-tick throughput: fixed sort/dispatch rates, or drain mode with a shared budget
+    private int sortRate;
+    private int dispatchRate;
+    private boolean drainMode;
+    private int tickBudgetRemaining;
+    private int[] sortBatch;
+    private int[] dispatchBatch;
+    private ConcurrentTickEngine concurrentEngine;  // null in sequential mode
+    private AsyncLogWriter logWriter;
+    private StringBuilder memoryLog;  // Used instead of a log file for in-memory runs
+    private Configuration.LogLevel logLevel;
+    private EventJournal journal;  // null unless JOURNAL_FILE is set
+    private EventCalendar eventCalendar;  // Event-driven engine only
+    private int eventTicksProcessed;
+    private SimulationSnapshot.Writer snapshotWriter;  // Created at the first checkpoint
+    private int lastCheckpointTick;
+    private boolean checkpointing;  // Stand-alone runs and their resumes only, not replications or hubs
+    private SimulationMetrics metrics;  // null unless METRICS_JMX or METRICS_HTTP_PORT is set
+    private ObjectName metricsName;
+    private MetricsHttpServer metricsServer;
+    private String reportFile;
+    private String report;
+    private NetworkHub hub;  // null unless the simulation is one hub of a NetworkSimulation
+    private int parcelNumberBase;  // Added to parcel numbers, so they are unique across hubs
+    private RealTimePacer pacer;  // null unless REAL_TIME_TICK_MS is set
+    private ArrivalGates arrivalGates;  // Live arrivals of a paced run without ARRIVAL_TRACE
     
     public ParcelSortXSimulation(String configFile) {
-        this.config = new Configuration(configFile);
-        this.arrivalBuffer = new ArrivalBuffer(config.getQueueCapacity());
-        this.returnStack = new ReturnStack();
-        this.destinationSorter = new DestinationSorter();
-        this.parcelTracker = new ParcelTracker();
-        this.terminalRotator = new TerminalRotator();
+        this(configFile, "log.txt");
+    }
+    
+    public ParcelSortXSimulation(String configFile, String logFile) {
+        this(new Configuration(configFile), logFile);
+    }
+    
+    private ParcelSortXSimulation(Configuration config, String logFile) {
+        this(config, config.hasRandomSeed() ? config.getRandomSeed() : System.nanoTime(), logFile, "report.txt",
+             config.isLogConsoleEcho());
+        
+        if (config.getJournalFile() != null) {
+            try {
+                this.journal = new EventJournal(config.getJournalFile(), randomSeed, config.getText());
+            } catch (IOException e) {
+                System.err.println("Error creating journal file: " + e.getMessage());
+            }
+        }
+        enableMetrics();
+        enableRealTime();
+        this.checkpointing = true;
+    }
+    
+    // A null logFile or reportFile keeps that output in memory (see getLog/getReport)
+    public ParcelSortXSimulation(Configuration config, long seed, String logFile, String reportFile,
+                                 boolean consoleEcho) {
+        this.config = config;
+        this.reportFile = reportFile;
+        this.parcels = new ParcelStore(config.getCities());
+        this.parcelTracker = createParcelTracker();
+        this.arrivalBuffer = createArrivalBuffer();
+        this.returnScheduler = config.isRetryWheel()
+                ? new RetryTimingWheel(parcels, config.getRetryBackoff(), config.getRetryWheelSlots())
+                : new ReturnStack();
+        this.destinationSorter = new DestinationSorter(parcels, config.isPriorityDispatch());
+        this.terminalRotator = new TerminalRotator(config.getActiveDocks(), config.isBacklogRotation());
         
         this.totalParcelsGenerated = 0;
         this.totalDispatched = 0;
@@ -35,187 +104,957 @@ public class ParcelSortXSimulation {
         this.maxQueueSize = 0;
         this.maxStackSize = 0;
         this.currentTick = 0;
-        this.random = new Random();
+        this.statistics = new StatisticsCollector(config.getCities());
+        this.sortRate = Math.max(1, config.getSortRate());
+        this.dispatchRate = Math.max(1, config.getDispatchRate());
+        this.drainMode = config.isDrainMode();
+        this.sortBatch = new int[Math.max(1, drainMode ? config.getQueueCapacity()
+                                                          : Math.min(sortRate, config.getQueueCapacity()))];
+        this.dispatchBatch = new int[drainMode ? 256 : Math.min(dispatchRate, 256)];
+        this.randomSeed = seed;
+        this.random = new SimulationRandom(seed);
+        
+        if (config.isConcurrentExecution()) {
+            // Producer and worker streams are split off the main stream
+            this.concurrentEngine = new ConcurrentTickEngine(config, (MpscArrivalBuffer) arrivalBuffer, parcels,
+                                                             destinationSorter, random);
+        }
+        if (config.getArrivalTrace() == null) {
+            scheduleNextArrival();  // Trace arrivals are scheduled once the trace is opened
+        }
         
         // Initialize terminal rotator
-        terminalRotator.initializeFromCityList(config.getCityList());
+        terminalRotator.initializeFromCityList(config.getCities());
         
         // Initialize logging
+        this.logLevel = config.getLogLevel();
+        if (logLevel == Configuration.LogLevel.OFF) {
+            return;
+        }
+        if (logFile == null) {
+            this.memoryLog = new StringBuilder();
+            return;
+        }
         try {
-            this.logWriter = new PrintWriter(new FileWriter("log.txt"));
+            this.logWriter = new AsyncLogWriter(logFile, config.getLogBufferCapacity(),
+                                                config.getLogFlushIntervalMs(), config.getLogFlushBytes(),
+                                                consoleEcho);
         } catch (IOException e) {
             System.err.println("Error creating log file: " + e.getMessage());
         }
     }
     
+    private ArrivalQueue createArrivalBuffer() {
+        if (config.isConcurrentExecution()) {
+            if (config.isSpillOverflow()) {
+                System.err.println("OVERFLOW_MODE=SPILL is not supported in concurrent mode; overflow is discarded");
+            }
+            return new MpscArrivalBuffer(config.getQueueCapacity());
+        }
+        if (config.isSpillOverflow()) {
+            try {
+                return new SpillingArrivalBuffer(config.getQueueCapacity(), parcels, parcelTracker,
+                                                 Paths.get(config.getSpillDirectory()), config.getSpillLimit(),
+                                                 config.getSpillSegmentBytes());
+            } catch (IOException e) {
+                System.err.println("Error creating spill directory, overflow will be discarded: " + e.getMessage());
+            }
+        }
+        return new ArrivalBuffer(config.getQueueCapacity());
+    }
+    
+    private ParcelTracker createParcelTracker() {
+        if (config.isOffHeapTracker()) {
+            if (config.getTrackerFile() == null) {
+                return new OffHeapParcelTracker(parcels);
+            }
+            try {
+                return new OffHeapParcelTracker(parcels, Paths.get(config.getTrackerFile()));
+            } catch (IOException e) {
+                System.err.println("Error creating tracker file, parcels will be tracked on the heap: " +
+                                   e.getMessage());
+            }
+        }
+        return new HeapParcelTracker(parcels, config.getTrackerInitialCapacity(), config.getTrackerMaxLoadFactor(),
+                                     createColdTier());
+    }
+    
+    // Null unless TRACKER_COLD_TIER is set; the off-heap tracker needs none
+    private ColdParcelArchive createColdTier() {
+        if (!config.isColdTier()) {
+            return null;
+        }
+        if (config.isColdTierOnDisk()) {
+            try {
+                return ColdParcelArchive.onDisk(config.getCities(), Paths.get(config.getColdTierDirectory()),
+                                                config.getColdTierCacheBlocks());
+            } catch (IOException e) {
+                System.err.println("Error creating cold tier file, finished parcels will be kept in memory: " +
+                                   e.getMessage());
+            }
+        }
+        return new ColdParcelArchive(config.getCities(), config.getColdTierCacheBlocks());
+    }
+    
     public void runSimulation() {
+        if (config.getArrivalTrace() != null) {
+            openArrivalTrace(0);
+        }
+        logRunHeader();
+        runRemainingTicks();
+    }
+    
+    // Makes this simulation one hub of a network; call before the run starts
+    void joinNetwork(NetworkHub hub) {
+        this.hub = hub;
+        this.parcelNumberBase = hub.getParcelNumberBase();
+    }
+    
+    // NetworkSimulation runs the ticks of its hubs itself, between these two calls
+    void beginRun() {
+        logRunHeader();
+    }
+    
+    void endRun() {
+        generateFinalReport();
+        shutdown();
+    }
+    
+    // Continues a run restored by fromSnapshot
+    public void resumeSimulation() {
+        if (logs(Configuration.LogLevel.SUMMARY)) {
+            log("Resumed from snapshot at tick " + currentTick);
+        }
+        runRemainingTicks();
+    }
+    
+    private void runRemainingTicks() {
+        if (pacer != null) {
+            runRealTime();
+        } else if (config.isEventDriven()) {
+            runEventDriven();
+        } else {
+            while (currentTick < config.getMaxTicks()) {
+                runTick();
+                checkpointIfDue();
+            }
+        }
+        
+        // Generate final report
+        generateFinalReport();
+        
+        shutdown();
+    }
+    
+    // Runs every tick at its wall-clock time, whatever the engine. Checkpoints are not written:
+    // live arrivals cannot be resumed from a snapshot.
+    private void runRealTime() {
+        if (arrivalGates != null) {
+            arrivalGates.start();
+        }
+        try {
+            while (currentTick < config.getMaxTicks()) {
+                pacer.awaitTick(currentTick + 1);
+                runTick();
+                pacer.endTick();
+            }
+        } finally {
+            if (arrivalGates != null) {
+                arrivalGates.stop();
+            }
+        }
+    }
+    
+    private void logRunHeader() {
+        if (!logs(Configuration.LogLevel.SUMMARY)) {
+            return;
+        }
         log("Starting ParcelSortX Simulation");
         log("Configuration loaded: " + config.getMaxTicks() + " ticks, " + 
             config.getCityList().length + " cities");
         log("Queue Capacity: " + config.getQueueCapacity());
-        
-        for (currentTick = 1; currentTick <= config.getMaxTicks(); currentTick++) {
+        log("Dispatch Policy: " + (config.isPriorityDispatch() ? "PRIORITY" : "FIFO"));
+        log("Execution Mode: " + (concurrentEngine != null ? "CONCURRENT" : "SEQUENTIAL") +
+            ", Random Seed: " + randomSeed);
+        log("Throughput: " + describeThroughput());
+        if (hasDockOptions()) {
+            log("Docks: " + describeDocks());
+        }
+        log("Engine: " + (config.isEventDriven() ? "EVENT" : "TICK"));
+        if (config.getArrivalTrace() != null) {
+            log("Arrival Trace: " + config.getArrivalTrace());
+        }
+        if (config.getRealTimeTickMs() > 0) {
+            log("Real Time: " + describeRealTime());
+        }
+        if (hub != null) {
+            log("Hub: " + hub.getName() + " (delivers to " + String.join(", ", hub.getCities()) + ")");
+        }
+    }
+    
+    // Advances the simulation by one tick; also used by the JMH benchmarks
+    void runTick() {
+        currentTick++;
+        tickBudgetRemaining = config.getTickBudget() > 0 ? config.getTickBudget() : Integer.MAX_VALUE;
+        if (logs(Configuration.LogLevel.TICK)) {
             log("[" + currentTick + "]");
-            
-            // 1. Generate new parcels
-            generateParcels();
-            
-            // 2. Process queue to BST OR reprocess ReturnStack (priority to ReturnStack)
-            processQueueOrReturnStack();
-            
-            // 3. Terminal rotation (before dispatch to ensure immediate dispatch after rotation)
-            if ((currentTick - 1) % config.getTerminalRotationInterval() == 0 && currentTick != 1) {
-                terminalRotator.advanceTerminal();
-                log("Rotated to: " + terminalRotator.getActiveTerminal());
+        }
+        record(EventJournal.Type.TICK, ParcelStore.NONE, -1);
+        
+        // 1. Generate new parcels (in a network, parcels arriving from other hubs come first)
+        if (hub != null) {
+            receiveTransfers();
+        }
+        generateParcels();
+        
+        // 2. Process queue to BST OR reprocess ReturnStack (priority to ReturnStack)
+        processQueueOrReturnStack();
+        
+        // 3. Terminal rotation (before dispatch to ensure immediate dispatch after rotation)
+        if ((currentTick - 1) % config.getTerminalRotationInterval() == 0 && currentTick != 1) {
+            terminalRotator.advanceTerminal();
+            record(EventJournal.Type.ROTATE, ParcelStore.NONE, terminalRotator.getActiveTerminalId());
+            if (logs(Configuration.LogLevel.TICK)) {
+                log("Rotated to: " + terminalRotator.describeActive());
             }
+        }
+        
+        // 4. Dispatch from BST (only parcels for active terminal)
+        dispatchFromBST();
+        
+        // 5. Update statistics
+        updateStatistics();
+        
+        // 6. Log tick summary
+        logTickSummary();
+    }
+    
+    // Runs only the ticks at which something can happen. After each processed tick the
+    // follow-up events are scheduled; every other tick is idle and leaves the state unchanged
+    // apart from terminal rotations, which are caught up arithmetically.
+    private void runEventDriven() {
+        if (eventCalendar == null) {
+            eventCalendar = new EventCalendar();
+            eventCalendar.schedule(nextArrivalTick, EventCalendar.EventType.ARRIVAL);
+        }
+        
+        while (eventCalendar.peekTick() <= config.getMaxTicks()) {
+            int tick = eventCalendar.pollTick();
+            skipIdleTicks(tick - 1);
+            runTick();
+            eventTicksProcessed++;
+            scheduleFollowUpEvents(eventCalendar);
+            checkpointIfDue();
+        }
+        skipIdleTicks(config.getMaxTicks());
+        
+        if (logs(Configuration.LogLevel.SUMMARY)) {
+            log("Event engine processed " + eventTicksProcessed + " of " + config.getMaxTicks() + " ticks (" +
+                eventCalendar.getProcessedEvents() + " events)");
+        }
+    }
+    
+    private void scheduleFollowUpEvents(EventCalendar calendar) {
+        int nextTick = currentTick + 1;
+        calendar.schedule(nextArrivalTick, EventCalendar.EventType.ARRIVAL);
+        if (!arrivalBuffer.isEmpty()) {
+            calendar.schedule(nextTick, EventCalendar.EventType.SORT);
+        }
+        if (!returnScheduler.isEmpty()) {
+            calendar.schedule(returnScheduler.nextEligibleTick(currentTick), EventCalendar.EventType.RETURN_ELIGIBLE);
+        }
+        for (int dock = 0; dock < terminalRotator.getActiveCount(); dock++) {
+            if (destinationSorter.countCityParcels(terminalRotator.getActiveTerminalId(dock)) > 0) {
+                calendar.schedule(nextTick, EventCalendar.EventType.DISPATCH);
+                break;
+            }
+        }
+        if (destinationSorter.getTotalParcels() > 0) {
+            // A rotation only matters while parcels are waiting for another terminal
+            calendar.schedule(nextRotationTick(currentTick), EventCalendar.EventType.ROTATION);
+        }
+    }
+    
+    // Rotations happen at ticks 1 + k * interval for k >= 1 (see runTick)
+    private int nextRotationTick(int tick) {
+        int interval = config.getTerminalRotationInterval();
+        return 1 + (Math.floorDiv(tick - 1, interval) + 1) * interval;
+    }
+    
+    // Advances to targetTick without running the idle ticks in between
+    private void skipIdleTicks(int targetTick) {
+        if (targetTick <= currentTick) {
+            return;
+        }
+        int interval = config.getTerminalRotationInterval();
+        long rotations = Math.floorDiv(targetTick - 1, interval) - Math.floorDiv(Math.max(currentTick, 1) - 1, interval);
+        terminalRotator.advanceTerminals(rotations);
+        currentTick = targetTick;
+        record(EventJournal.Type.SKIP, ParcelStore.NONE, terminalRotator.getActiveTerminalId());
+    }
+    
+    // Draws the gap to the next tick with arrivals and that tick's parcel count. Without
+    // ARRIVAL_PROBABILITY this matches a uniform count in [min, max] every tick; either way
+    // the empty ticks in between are skipped with a single geometric draw.
+    private void scheduleNextArrival() {
+        if (arrivalSource != null) {
+            nextArrivalTick = Math.max(currentTick + 1, arrivalSource.peekNextTick());
+            nextArrivalCount = 0;  // Every row due at that tick
+            return;
+        }
+        int min = config.getParcelPerTickMin();
+        int max = config.getParcelPerTickMax();
+        double emptyProbability = min <= 0 ? 1.0 / (max + 1) : 0;
+        if (config.hasArrivalProbability()) {
+            emptyProbability = 1 - config.getArrivalProbability();
+        }
+        if (max <= 0 || emptyProbability >= 1) {
+            nextArrivalTick = Integer.MAX_VALUE;
+            nextArrivalCount = 0;
+            return;
+        }
+        
+        long gap = 1;
+        if (emptyProbability > 0) {
+            gap += (long) Math.min(Integer.MAX_VALUE, Math.floor(Math.log(1.0 - random.nextDouble()) /
+                                                                 Math.log(emptyProbability)));
+        }
+        min = Math.max(1, min);
+        nextArrivalTick = (int) Math.min(Integer.MAX_VALUE, currentTick + gap);
+        nextArrivalCount = random.nextInt(max - min + 1) + min;
+    }
+    
+    // Streams arrivals from ARRIVAL_TRACE starting at a position from ArrivalSource.getPosition;
+    // if the trace cannot be opened the run falls back to random arrivals
+    private void openArrivalTrace(long position) {
+        try {
+            arrivalSource = new TraceArrivalSource(config.getArrivalTrace(), config.getCities(), position);
+        } catch (IOException e) {
+            System.err.println("Error opening arrival trace, using random arrivals: " + e.getMessage());
+        }
+        scheduleNextArrival();
+    }
+    
+    // Paces ticks to the wall clock; without a trace, arrivals come from the gates instead of
+    // being drawn per tick
+    private void enableRealTime() {
+        if (config.getRealTimeTickMs() <= 0) {
+            return;
+        }
+        pacer = new RealTimePacer(config.getRealTimeTickMs());
+        if (config.getArrivalTrace() == null) {
+            arrivalGates = new ArrivalGates(config, random, config.getRealTimeTickMs());
+            arrivalSource = arrivalGates;
+            scheduleNextArrival();
+        }
+    }
+    
+    // Publishes live metrics over JMX and/or HTTP as configured, continuing the current totals
+    private void enableMetrics() {
+        if (!config.isMetricsJmx() && config.getMetricsHttpPort() <= 0) {
+            return;
+        }
+        metrics = new SimulationMetrics(config.getCities(), currentTick, totalParcelsGenerated, totalDispatched,
+                                        totalReturned, totalParcelsDiscarded);
+        if (config.isMetricsJmx()) {
+            try {
+                metricsName = new ObjectName(SimulationMetrics.OBJECT_NAME);
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsName);
+            } catch (JMException e) {
+                metricsName = null;
+                System.err.println("Error registering metrics MBean: " + e.getMessage());
+            }
+        }
+        if (config.getMetricsHttpPort() > 0) {
+            try {
+                metricsServer = new MetricsHttpServer(config.getMetricsHttpPort(), metrics);
+            } catch (IOException e) {
+                System.err.println("Error starting metrics endpoint: " + e.getMessage());
+            }
+        }
+    }
+    
+    // Every CHECKPOINT_INTERVAL ticks the state is encoded in memory and handed to the
+    // background writer, so the tick loop never waits for the disk
+    private void checkpointIfDue() {
+        int interval = config.getCheckpointInterval();
+        if (!checkpointing || interval <= 0 || currentTick - lastCheckpointTick < interval) {
+            return;
+        }
+        if (snapshotWriter == null) {
+            snapshotWriter = new SimulationSnapshot.Writer(config.getCheckpointFile());
+        }
+        if (snapshotWriter.isBusy()) {
+            return; // Retried after the next tick
+        }
+        
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            SimulationSnapshot.Output out = new SimulationSnapshot.Output(bytes, randomSeed, config.getText());
+            writeSnapshot(out);
+            out.flush();
+            snapshotWriter.submit(bytes.toByteArray());
+            lastCheckpointTick = currentTick;
+        } catch (IOException e) {
+            System.err.println("Error encoding snapshot: " + e.getMessage());
+        }
+    }
+    
+    private void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(currentTick);
+        out.writeInt(totalParcelsGenerated);
+        out.writeInt(totalDispatched);
+        out.writeInt(totalReturned);
+        out.writeInt(totalParcelsDiscarded);
+        out.writeInt(maxQueueSize);
+        out.writeInt(maxStackSize);
+        out.writeInt(nextArrivalTick);
+        out.writeInt(nextArrivalCount);
+        out.writeLong(random.getSeed());
+        out.writeLong(random.getGamma());
+        
+        parcels.writeSnapshot(out);
+        terminalRotator.writeSnapshot(out);
+        arrivalBuffer.writeSnapshot(out);
+        returnScheduler.writeSnapshot(out);
+        destinationSorter.writeSnapshot(out);
+        parcelTracker.writeSnapshot(out);
+        statistics.writeSnapshot(out);
+        
+        out.writeBoolean(concurrentEngine != null);
+        if (concurrentEngine != null) {
+            concurrentEngine.writeSnapshot(out);
+        }
+        out.writeBoolean(eventCalendar != null);
+        if (eventCalendar != null) {
+            out.writeInt(eventTicksProcessed);
+            eventCalendar.writeSnapshot(out);
+        }
+        out.writeBoolean(arrivalSource != null);
+        if (arrivalSource != null) {
+            out.writeLong(arrivalSource.getPosition());
+        }
+    }
+    
+    private void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        currentTick = in.readInt();
+        totalParcelsGenerated = in.readInt();
+        totalDispatched = in.readInt();
+        totalReturned = in.readInt();
+        totalParcelsDiscarded = in.readInt();
+        maxQueueSize = in.readInt();
+        maxStackSize = in.readInt();
+        nextArrivalTick = in.readInt();
+        nextArrivalCount = in.readInt();
+        random.restore(in.readLong(), in.readLong());
+        
+        parcels.readSnapshot(in);
+        terminalRotator.readSnapshot(in);
+        arrivalBuffer.readSnapshot(in);
+        returnScheduler.readSnapshot(in);
+        destinationSorter.readSnapshot(in);
+        for (int i = 0; i < config.getCities().getListSize(); i++) {
+            backlogChanged(config.getCities().getListId(i));
+        }
+        parcelTracker.readSnapshot(in);
+        statistics.readSnapshot(in);
+        
+        if (in.readBoolean() != (concurrentEngine != null)) {
+            throw new IOException("Snapshot execution mode does not match its configuration");
+        }
+        if (concurrentEngine != null) {
+            concurrentEngine.readSnapshot(in);
+        }
+        if (in.readBoolean()) {
+            eventTicksProcessed = in.readInt();
+            eventCalendar = new EventCalendar();
+            eventCalendar.readSnapshot(in);
+        }
+        if (in.readBoolean()) {
+            openArrivalTrace(in.readLong());
+        }
+        lastCheckpointTick = currentTick;
+    }
+    
+    // Restores a checkpoint; the configuration and seed come from the snapshot itself and
+    // the log file is continued. Call resumeSimulation() to run the remaining ticks.
+    public static ParcelSortXSimulation fromSnapshot(String snapshotFile, String logFile) throws IOException {
+        SimulationSnapshot.Input in = new SimulationSnapshot.Input(new FileInputStream(snapshotFile));
+        try {
+            Configuration config = Configuration.fromText(in.getConfigText());
+            ParcelSortXSimulation simulation = new ParcelSortXSimulation(config, in.getSeed(), null, "report.txt",
+                                                                         false);
+            simulation.readSnapshot(in);
+            simulation.enableMetrics();
+            simulation.checkpointing = true;
             
-            // 4. Dispatch from BST (only parcels for active terminal)
-            dispatchFromBST();
-            
-            // 5. Update statistics
-            updateStatistics();
-            
-            // 6. Log tick summary
-            logTickSummary();
+            simulation.memoryLog = null;
+            try {
+                simulation.logWriter = new AsyncLogWriter(logFile, config.getLogBufferCapacity(),
+                                                          config.getLogFlushIntervalMs(), config.getLogFlushBytes(),
+                                                          config.isLogConsoleEcho(), true);
+            } catch (IOException e) {
+                System.err.println("Error opening log file: " + e.getMessage());
+            }
+            return simulation;
+        } finally {
+            in.close();
+        }
+    }
+    
+    // Stops worker threads and flushes the log
+    void shutdown() {
+        if (arrivalBuffer instanceof SpillingArrivalBuffer) {
+            try {
+                ((SpillingArrivalBuffer) arrivalBuffer).close();
+            } catch (IOException e) {
+                System.err.println("Error removing spill files: " + e.getMessage());
+            }
         }
         
-        // Generate final report
-        generateFinalReport();
+        if (concurrentEngine != null) {
+            concurrentEngine.shutdown();
+        }
+        
+        if (arrivalSource != null) {
+            try {
+                arrivalSource.close();
+            } catch (IOException e) {
+                System.err.println("Error closing arrival trace: " + e.getMessage());
+            }
+        }
+        
+        if (snapshotWriter != null) {
+            snapshotWriter.close();
+        }
+        
+        try {
+            parcelTracker.close();
+        } catch (IOException e) {
+            System.err.println("Error closing tracker file: " + e.getMessage());
+        }
+        
+        if (metricsServer != null) {
+            metricsServer.close();
+        }
+        if (metricsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+            } catch (JMException e) {
+                System.err.println("Error unregistering metrics MBean: " + e.getMessage());
+            }
+        }
+        
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error closing journal file: " + e.getMessage());
+            }
+        }
         
         if (logWriter != null) {
-            logWriter.close();
+            try {
+                logWriter.close();
+            } catch (IOException e) {
+                System.err.println("Error closing log file: " + e.getMessage());
+            }
         }
     }
     
     private void generateParcels() {
-        int numParcels = random.nextInt(config.getParcelPerTickMax() - config.getParcelPerTickMin() + 1) 
-                        + config.getParcelPerTickMin();
+        if (arrivalSource != null) {
+            generateTraceArrivals();
+            return;
+        }
+        
+        int numParcels = 0;
+        if (currentTick == nextArrivalTick) {
+            numParcels = nextArrivalCount;
+            scheduleNextArrival();
+        }
         
-        StringBuilder newParcels = new StringBuilder("New Parcels: ");
+        StringBuilder newParcels = logs(Configuration.LogLevel.PARCEL) ? new StringBuilder("New Parcels: ") : null;
         int parcelsAdded = 0;
         int parcelsDiscarded = 0;
         
-        for (int i = 0; i < numParcels; i++) {
-            String parcelID = "P" + String.format("%04d", totalParcelsGenerated + 1);
-            String destination = config.getCityList()[random.nextInt(config.getCityList().length)];
-            int priority = random.nextInt(3) + 1;
-            String size = getRandomSize();
-            
-            Parcel parcel = new Parcel(parcelID, destination, priority, size, currentTick);
-            
-            // Check if queue is full before enqueueing
+        if (concurrentEngine != null) {
+            // Producers fill the buffer in parallel; results are applied here in parcel order
+            int admitted = Math.min(numParcels, arrivalBuffer.getCapacity() - arrivalBuffer.size());
+            long firstSequence = concurrentEngine.generateArrivals(currentTick, numParcels, admitted,
+                                                                   parcelNumberBase + totalParcelsGenerated + 1);
+            MpscArrivalBuffer mpscBuffer = (MpscArrivalBuffer) arrivalBuffer;
+            for (int i = 0; i < admitted; i++) {
+                acceptParcel(mpscBuffer.peekAt(firstSequence + i), newParcels, ++parcelsAdded);
+            }
+            for (int i = admitted; i < numParcels; i++) {
+                discardParcel(parcelNumberBase + totalParcelsGenerated + 1, concurrentEngine.getDiscardedCityId(i));
+                parcelsDiscarded++;
+            }
+        } else {
+            CityDictionary cities = config.getCities();
+            for (int i = 0; i < numParcels; i++) {
+                int parcelNumber = parcelNumberBase + totalParcelsGenerated + 1;
+                int cityId = cities.getListId(random.nextInt(cities.getListSize()));
+                int priority = random.nextInt(Parcel.PRIORITY_LEVELS) + 1;
+                int sizeIndex = random.nextInt(Parcel.SIZES.length);
+                
+                // Check if queue is full before enqueueing
+                if (arrivalBuffer.isFull()) {
+                    discardParcel(parcelNumber, cityId);
+                    parcelsDiscarded++;
+                } else {
+                    int parcel = parcels.add(parcelNumber, cityId, priority, sizeIndex, currentTick);
+                    acceptParcel(parcel, newParcels, ++parcelsAdded);
+                    arrivalBuffer.enqueue(parcel);
+                }
+            }
+        }
+        
+        logArrivals(newParcels, parcelsAdded, parcelsDiscarded);
+    }
+    
+    // Parcels whose transit from another hub has ended join the queue; when it is full they wait
+    // at the gate for a later tick instead of being discarded
+    private void receiveTransfers() {
+        hub.drainInbound();
+        StringBuilder receivedParcels = null;
+        HubTransferQueue.Transfer transfer;
+        while (!arrivalBuffer.isFull() && (transfer = hub.peekDue(currentTick)) != null) {
+            int parcel = parcels.add(transfer.parcelNumber, transfer.cityId, transfer.priority, transfer.sizeIndex,
+                                     currentTick);
+            hub.receive(transfer, parcels, parcel);
+            parcelTracker.insert(parcel);
+            if (logs(Configuration.LogLevel.PARCEL)) {
+                if (receivedParcels == null) {
+                    receivedParcels = new StringBuilder("Received: ");
+                } else {
+                    receivedParcels.append(", ");
+                }
+                receivedParcels.append(parcels.getParcelID(parcel)).append(" to ")
+                               .append(parcels.getDestinationCity(parcel)).append(" from ")
+                               .append(hub.getHubName(transfer.sourceHub));
+            }
+            arrivalBuffer.enqueue(parcel);  // Last: a spilled parcel's row is released
+        }
+        if (receivedParcels != null) {
+            log(receivedParcels.toString());
+        }
+    }
+    
+    // Enqueues every trace row due by the current tick, with the same overflow handling
+    private void generateTraceArrivals() {
+        StringBuilder newParcels = logs(Configuration.LogLevel.PARCEL) ? new StringBuilder("New Parcels: ") : null;
+        int parcelsAdded = 0;
+        int parcelsDiscarded = 0;
+        
+        while (arrivalSource.poll(currentTick)) {
             if (arrivalBuffer.isFull()) {
+                discardParcel(arrivalSource.getParcelNumber(), arrivalSource.getCityId());
                 parcelsDiscarded++;
-                totalParcelsDiscarded++;
-                log("WARNING: Queue overflow - discarding parcel " + parcelID + " to " + destination);
             } else {
+                int parcel = parcels.add(arrivalSource.getParcelNumber(), arrivalSource.getCityId(),
+                                         arrivalSource.getPriority(), arrivalSource.getSizeIndex(), currentTick);
+                acceptParcel(parcel, newParcels, ++parcelsAdded);
+                if (arrivalGates != null) {
+                    arrivalGates.markAccepted();
+                }
                 arrivalBuffer.enqueue(parcel);
-                parcelTracker.insert(parcelID, parcel);
-                totalParcelsGenerated++;
-                parcelsAdded++;
-                
-                if (parcelsAdded > 1) newParcels.append(", ");
-                newParcels.append(parcelID).append(" to ").append(destination)
-                         .append(" (Priority ").append(priority).append(")");
             }
         }
+        scheduleNextArrival();
         
-        if (parcelsAdded > 0) {
+        logArrivals(newParcels, parcelsAdded, parcelsDiscarded);
+    }
+    
+    private void logArrivals(StringBuilder newParcels, int parcelsAdded, int parcelsDiscarded) {
+        if (newParcels != null && parcelsAdded > 0) {
             log(newParcels.toString());
         }
+        if (!logs(Configuration.LogLevel.TICK)) {
+            return;
+        }
         if (parcelsDiscarded > 0) {
             log("Parcels discarded due to queue overflow: " + parcelsDiscarded);
         }
-        log("Queue Size: " + arrivalBuffer.size() + "/" + arrivalBuffer.getCapacity());
+        if (arrivalBuffer instanceof SpillingArrivalBuffer) {
+            SpillingArrivalBuffer spillingBuffer = (SpillingArrivalBuffer) arrivalBuffer;
+            log("Queue Size: " + spillingBuffer.getMemorySize() + "/" + arrivalBuffer.getCapacity() +
+                ", Spilled: " + spillingBuffer.getSpilledCount());
+        } else {
+            log("Queue Size: " + arrivalBuffer.size() + "/" + arrivalBuffer.getCapacity());
+        }
+    }
+    
+    private void acceptParcel(int parcel, StringBuilder newParcels, int parcelsAdded) {
+        parcelTracker.insert(parcel);
+        totalParcelsGenerated++;
+        if (metrics != null) {
+            metrics.recordGenerated();
+        }
+        record(EventJournal.Type.ENQUEUE, parcel, parcels.getCityId(parcel));
+        
+        if (newParcels == null) {
+            return;
+        }
+        if (parcelsAdded > 1) newParcels.append(", ");
+        newParcels.append(parcels.getParcelID(parcel)).append(" to ").append(parcels.getDestinationCity(parcel))
+                 .append(" (Priority ").append(parcels.getPriority(parcel)).append(")");
     }
     
-    private String getRandomSize() {
-        String[] sizes = {"Small", "Medium", "Large"};
-        return sizes[random.nextInt(sizes.length)];
+    private void discardParcel(int parcelNumber, int cityId) {
+        totalParcelsDiscarded++;
+        if (metrics != null) {
+            metrics.recordDiscarded();
+        }
+        if (journal != null) {
+            journal.append(EventJournal.Type.DISCARD, currentTick, parcelNumber, cityId, 0, 0);
+        }
+        if (logs(Configuration.LogLevel.PARCEL)) {
+            log("WARNING: Queue overflow - discarding parcel " + Parcel.formatID(parcelNumber) + " to " +
+                config.getCities().getName(cityId));
+        }
     }
     
     // Process queue to BST OR reprocess ReturnStack (priority to ReturnStack)
     private void processQueueOrReturnStack() {
-        // First, try to reprocess from ReturnStack (if any parcel was pushed in previous tick)
-        if (!returnStack.isEmpty()) {
-            Parcel parcel = returnStack.pop(currentTick);
-            if (parcel != null) {
-                destinationSorter.insertParcel(parcel);
-                parcelTracker.updateStatus(parcel.getParcelID(), Parcel.ParcelStatus.Sorted);
-                log("Reprocessed: " + parcel.getParcelID() + " from ReturnStack to BST");
-                return; // Only process one parcel per tick
+        int budget = drainMode ? tickBudgetRemaining : sortRate;
+        int sorted = 0;
+        
+        // First, reprocess eligible parcels from ReturnStack (pushed in a previous tick, or due
+        // in the retry wheel)
+        while (sorted < budget) {
+            int parcel = returnScheduler.pop(currentTick);
+            if (parcel == ParcelStore.NONE) {
+                break;
             }
+            reprocessParcel(parcel);
+            sorted++;
         }
         
-        // If no ReturnStack processing, then process from queue
-        if (!arrivalBuffer.isEmpty()) {
-            Parcel parcel = arrivalBuffer.dequeue();
-            destinationSorter.insertParcel(parcel);
-            parcelTracker.updateStatus(parcel.getParcelID(), Parcel.ParcelStatus.Sorted);
-            log("Sorted to BST: " + parcel.getParcelID());
+        // Then move the rest of the budget from the queue in batches
+        boolean logParcels = logs(Configuration.LogLevel.PARCEL);
+        StringBuilder sortedParcels = null;
+        while (sorted < budget && !arrivalBuffer.isEmpty()) {
+            int count = arrivalBuffer.dequeueBatch(sortBatch, budget - sorted);
+            destinationSorter.insertParcels(sortBatch, count);
+            
+            for (int i = 0; i < count; i++) {
+                int parcel = sortBatch[i];
+                parcelTracker.markSorted(parcel);
+                backlogChanged(parcels.getCityId(parcel));
+                record(EventJournal.Type.SORT, parcel, parcels.getCityId(parcel));
+                if (arrivalGates != null) {
+                    arrivalGates.recordSorted();
+                }
+                if (!logParcels) {
+                    continue;
+                }
+                if (sortedParcels == null) {
+                    sortedParcels = new StringBuilder("Sorted to BST: ");
+                } else {
+                    sortedParcels.append(", ");
+                }
+                sortedParcels.append(parcels.getParcelID(parcel));
+            }
+            sorted += count;
+        }
+        
+        if (sortedParcels != null) {
+            log(sortedParcels.toString());
+        }
+        tickBudgetRemaining -= sorted;
+    }
+    
+    private void reprocessParcel(int parcel) {
+        destinationSorter.insertParcel(parcel);
+        parcelTracker.markSorted(parcel);
+        backlogChanged(parcels.getCityId(parcel));
+        record(EventJournal.Type.REPROCESS, parcel, parcels.getCityId(parcel));
+        if (logs(Configuration.LogLevel.PARCEL)) {
+            log("Reprocessed: " + parcels.getParcelID(parcel) + " from ReturnStack to BST");
         }
     }
     
-    // Dispatch from BST (only parcels for active terminal)
+    // Dispatch from BST (only parcels for the terminals at a dock)
     private void dispatchFromBST() {
-        String activeTerminal = terminalRotator.getActiveTerminal();
-        List<Parcel> cityParcels = destinationSorter.getCityParcels(activeTerminal);
+        if (concurrentEngine != null) {
+            // One worker per terminal; outcomes are applied in terminal order. The docks split
+            // a DRAIN budget evenly, as their workers run at the same time
+            int budget = drainMode ? tickBudgetRemaining / Math.max(1, terminalRotator.getActiveCount()) : dispatchRate;
+            concurrentEngine.dispatch(terminalRotator, budget);
+            for (int t = 0; t < concurrentEngine.getTerminalCount(); t++) {
+                for (int i = 0; i < concurrentEngine.getDispatchedCount(t); i++) {
+                    completeDispatch(concurrentEngine.getDispatchedParcel(t, i), t,
+                                     concurrentEngine.isMisrouted(t, i));
+                }
+                tickBudgetRemaining -= concurrentEngine.getDispatchedCount(t);
+            }
+            return;
+        }
         
-        if (!cityParcels.isEmpty()) {
-            Parcel parcel = cityParcels.get(0);
+        // Dock by dock; in DRAIN mode each dock takes what the previous ones left of the budget
+        for (int dock = 0; dock < terminalRotator.getActiveCount(); dock++) {
+            int activeTerminal = terminalRotator.getActiveTerminalId(dock);
+            int budget = drainMode ? tickBudgetRemaining : dispatchRate;
+            int dispatched = 0;
+            while (dispatched < budget) {
+                int count = destinationSorter.pollNext(activeTerminal, dispatchBatch, 0, budget - dispatched);
+                if (count == 0) {
+                    break;
+                }
+                for (int i = 0; i < count; i++) {
+                    // Check for misrouting
+                    completeDispatch(dispatchBatch[i], activeTerminal, random.nextDouble() < config.getMisroutingRate());
+                }
+                dispatched += count;
+            }
+            tickBudgetRemaining -= dispatched;
+        }
+    }
+    
+    // Each outcome is one tracker transition on the parcel's handle, so the ID is never looked up
+    private void completeDispatch(int parcel, int terminal, boolean misrouted) {
+        backlogChanged(terminal);
+        // In a network, a parcel whose hub cannot be reached at the moment is held like a return
+        boolean unroutable = !misrouted && hub != null && !hub.delivers(terminal) &&
+                             hub.nextHop(terminal) == HubNetwork.NO_ROUTE;
+        misrouted |= unroutable;
+        record(misrouted ? EventJournal.Type.RETURN : EventJournal.Type.DISPATCH, parcel, terminal);
+        if (misrouted) {
+            // Misrouted - push to return stack, whose backoff depends on the return count
+            parcelTracker.markReturned(parcel);
+            statistics.recordReturn(parcels, parcel);
+            returnScheduler.push(parcel, currentTick);
+            totalReturned++;
+            if (metrics != null) {
+                metrics.recordReturned();
+            }
             
-            // Check for misrouting
-            if (random.nextDouble() < config.getMisroutingRate()) {
-                // Misrouted - push to return stack
-                returnStack.push(parcel, currentTick);
-                parcelTracker.updateStatus(parcel.getParcelID(), Parcel.ParcelStatus.Returned);
-                parcelTracker.incrementReturnCount(parcel.getParcelID());
-                destinationSorter.removeParcel(activeTerminal, parcel.getParcelID());
-                totalReturned++;
-                
-                log("Returned: " + parcel.getParcelID() + " misrouted -> Pushed to ReturnStack");
+            if (logs(Configuration.LogLevel.PARCEL)) {
+                log("Returned: " + parcels.getParcelID(parcel) + (unroutable ? " no route to " + config.getCities().getName(terminal)
+                    : " misrouted") + " -> Pushed to ReturnStack");
+            }
+        } else {
+            // Successfully dispatched; a parcel leaving for another hub only counts as forwarded
+            // (by the NetworkHub), and as dispatched at the hub that delivers it
+            boolean releasable = parcelTracker.markDispatched(parcel, currentTick);
+            int nextHub = -1;  // Set when the parcel leaves for another hub
+            if (hub != null && !hub.delivers(terminal)) {
+                nextHub = hub.forward(parcels, parcel, currentTick);
             } else {
-                // Successfully dispatched
-                parcelTracker.updateStatus(parcel.getParcelID(), Parcel.ParcelStatus.Dispatched);
-                parcelTracker.setDispatchTick(parcel.getParcelID(), currentTick);
-                destinationSorter.removeParcel(activeTerminal, parcel.getParcelID());
                 totalDispatched++;
-                
-                log("Dispatched: " + parcel.getParcelID() + " from BST to " + activeTerminal + " -> Success");
+                if (metrics != null) {
+                    metrics.recordDispatched();
+                }
+                statistics.recordDispatch(parcels, parcel, currentTick);
+                if (hub != null) {
+                    hub.recordDelivery(parcels, parcel, currentTick);
+                }
+            }
+            
+            if (logs(Configuration.LogLevel.PARCEL)) {
+                log("Dispatched: " + parcels.getParcelID(parcel) + " from BST to " +
+                    config.getCities().getName(terminal) + (nextHub >= 0 ? " -> Forwarded to " + hub.getHubName(nextHub)
+                                                                          : " -> Success"));
+            }
+            if (releasable) {
+                parcels.release(parcel);  // Its record lives on in the tracker
             }
         }
     }
     
+    // Keeps the BACKLOG rotation's heap in step with the sorter
+    private void backlogChanged(int cityId) {
+        if (terminalRotator.isBacklogPolicy()) {
+            terminalRotator.updateBacklog(cityId, destinationSorter.countCityParcels(cityId));
+        }
+    }
+    
+    private String describeThroughput() {
+        if (drainMode) {
+            return "DRAIN (budget " + (config.getTickBudget() > 0 ? config.getTickBudget() + " parcels" : "unlimited") +
+                   " per tick)";
+        }
+        return "SORT_RATE " + sortRate + ", DISPATCH_RATE " + dispatchRate + " per tick";
+    }
+    
+    private boolean hasDockOptions() {
+        return config.getActiveDocks() > 1 || terminalRotator.isBacklogPolicy();
+    }
+    
+    private String describeDocks() {
+        return terminalRotator.getActiveCount() + " active, " +
+               (terminalRotator.isBacklogPolicy() ? "BACKLOG" : "ROUND_ROBIN") + " rotation";
+    }
+    
+    private String describeRealTime() {
+        return config.getRealTimeTickMs() + " ms per tick, " +
+               (config.getArrivalTrace() != null ? "arrivals from trace"
+                                                 : Math.max(1, config.getArrivalGates()) + " arrival gates");
+    }
+    
+    private static String formatMillis(double nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+    
     private void updateStatistics() {
         maxQueueSize = Math.max(maxQueueSize, arrivalBuffer.size());
-        maxStackSize = Math.max(maxStackSize, returnStack.size());
+        maxStackSize = Math.max(maxStackSize, returnScheduler.size());
+        if (metrics != null) {
+            metrics.updateTick(currentTick, arrivalBuffer.size(), returnScheduler.size(), parcelTracker,
+                               destinationSorter);
+        }
     }
     
     private void logTickSummary() {
-        log("Active Terminal: " + terminalRotator.getActiveTerminal());
-        log("ReturnStack Size: " + returnStack.size());
+        if (!logs(Configuration.LogLevel.TICK)) {
+            return;
+        }
+        if (terminalRotator.getActiveCount() > 1) {
+            log("Active Terminals: " + terminalRotator.describeActive());
+        } else {
+            log("Active Terminal: " + terminalRotator.getActiveTerminal());
+        }
+        log("ReturnStack Size: " + returnScheduler.size());
         
         // Log BST status for each city
         StringBuilder bstStatus = new StringBuilder("BST Status: ");
-        String[] cities = config.getCityList();
-        for (int i = 0; i < cities.length; i++) {
+        CityDictionary cities = config.getCities();
+        for (int i = 0; i < cities.getListSize(); i++) {
             if (i > 0) bstStatus.append(", ");
-            bstStatus.append(cities[i]).append(": ").append(destinationSorter.countCityParcels(cities[i]));
+            int cityId = cities.getListId(i);
+            bstStatus.append(cities.getName(cityId)).append(": ").append(destinationSorter.countCityParcels(cityId));
         }
         log(bstStatus.toString());
         log(""); // Empty line for readability
     }
     
+    private void record(EventJournal.Type type, int parcel, int cityId) {
+        if (journal != null) {
+            journal.append(type, currentTick, parcels, parcel, cityId);
+        }
+    }
+    
+    // Callers check the level first, so that disabled messages are never built
+    private boolean logs(Configuration.LogLevel level) {
+        return logLevel.compareTo(level) >= 0;
+    }
+    
+    // Lines are handed to the background writer, which batches file and console output
     private void log(String message) {
-        System.out.println(message);
         if (logWriter != null) {
-            logWriter.println(message);
-            logWriter.flush();
+            logWriter.append(message);
+        } else if (memoryLog != null) {
+            memoryLog.append(message).append(System.lineSeparator());
+        } else if (config.isLogConsoleEcho()) {
+            System.out.println(message);
         }
     }
     
     private void generateFinalReport() {
-        try (PrintWriter reportWriter = new PrintWriter(new FileWriter("report.txt"))) {
+        StringWriter reportBuffer = new StringWriter();
+        try (PrintWriter reportWriter = new PrintWriter(reportBuffer)) {
             reportWriter.println("ParcelSortX Simulation Report");
             reportWriter.println("Generated: " + new Date());
             reportWriter.println("==========================================");
@@ -224,6 +1063,38 @@ public class ParcelSortXSimulation {
             reportWriter.println("1. Simulation Overview");
             reportWriter.println("   • Total Ticks Executed: " + config.getMaxTicks());
             reportWriter.println("   • Number of Parcels Generated: " + totalParcelsGenerated);
+            reportWriter.println("   • Execution Mode: " + (concurrentEngine != null ? "CONCURRENT" : "SEQUENTIAL") +
+                                 " (seed " + randomSeed + ")");
+            reportWriter.println("   • Throughput: " + describeThroughput());
+            if (hasDockOptions()) {
+                reportWriter.println("   • Docks: " + describeDocks());
+            }
+            if (config.getRealTimeTickMs() > 0) {
+                reportWriter.println("   • Real Time: " + describeRealTime());
+            }
+            if (pacer != null) {
+                // Wall-clock measurements; a journal replay has none
+                LatencyHistogram jitter = pacer.getJitter();
+                reportWriter.println("   • Tick Start Jitter: mean " + formatMillis(jitter.getMean()) + ", p50 " +
+                                     formatMillis(jitter.getPercentile(50)) + ", p99 " +
+                                     formatMillis(jitter.getPercentile(99)) + ", max " +
+                                     formatMillis(jitter.getMax()) + " ms");
+                reportWriter.println("   • Tick Overruns: " + pacer.getOverruns() + " of " + pacer.getTicks() +
+                                     " ticks");
+            }
+            if (arrivalGates != null) {
+                LatencyHistogram latency = arrivalGates.getScanToSort();
+                reportWriter.println("   • Enqueue-to-Sort Latency (" + latency.getCount() + " parcels): p50 " +
+                                     formatMillis(latency.getPercentile(50)) + ", p90 " +
+                                     formatMillis(latency.getPercentile(90)) + ", p99 " +
+                                     formatMillis(latency.getPercentile(99)) + ", p99.9 " +
+                                     formatMillis(latency.getPercentile(99.9)) + ", max " +
+                                     formatMillis(latency.getMax()) + " ms");
+                reportWriter.println("   • Gate Scans Dropped (Buffer Full): " + arrivalGates.getDropped());
+            }
+            if (logWriter != null && logWriter.getDroppedLines() > 0) {
+                reportWriter.println("   • Log Lines Dropped (Writer Behind): " + logWriter.getDroppedLines());
+            }
             reportWriter.println();
             
             // Parcel Statistics
@@ -232,25 +1103,56 @@ public class ParcelSortXSimulation {
             reportWriter.println("   • Total Returned Parcels: " + totalReturned);
             reportWriter.println("   • Total Parcels Discarded (Queue Overflow): " + totalParcelsDiscarded);
             reportWriter.println("   • Parcels in Queue at End: " + arrivalBuffer.size());
-            reportWriter.println("   • Parcels in BST at End: " + getTotalParcelsInBST());
-            reportWriter.println("   • Parcels in ReturnStack at End: " + returnStack.size());
+            if (arrivalBuffer instanceof SpillingArrivalBuffer) {
+                SpillingArrivalBuffer spillingBuffer = (SpillingArrivalBuffer) arrivalBuffer;
+                reportWriter.println("   • Parcels Spilled to Disk: " + spillingBuffer.getTotalSpilled() +
+                                     " (refilled: " + spillingBuffer.getTotalRefilled() +
+                                     ", on disk at end: " + spillingBuffer.getSpilledCount() +
+                                     ", peak on disk: " + spillingBuffer.getMaxSpilled() + ")");
+            }
+            reportWriter.println("   • Parcels in BST at End: " + destinationSorter.getTotalParcels());
+            reportWriter.println("   • Parcels in ReturnStack at End: " + returnScheduler.size());
+            if (hub != null) {
+                reportWriter.println("   • Hub " + hub.getName() + ": " + hub.getDelivered() + " delivered here, " +
+                                     hub.getForwarded() + " forwarded, " + hub.getReceived() + " received, " +
+                                     hub.getInTransit() + " arriving at end");
+                reportWriter.println("   • Average Delivery Time Since First Hub: " +
+                                     String.format("%.2f", hub.getAverageDeliveryDelay()) + " ticks (max " +
+                                     hub.getMaxDeliveryDelay() + ")");
+            }
             reportWriter.println();
             
             // Destination Metrics
             reportWriter.println("3. Destination Metrics");
-            String[] cities = config.getCityList();
-            for (String city : cities) {
-                int count = destinationSorter.countCityParcels(city);
-                reportWriter.println("   • " + city + ": " + count + " parcels");
+            CityDictionary cities = config.getCities();
+            for (int i = 0; i < cities.getListSize(); i++) {
+                int cityId = cities.getListId(i);
+                int count = destinationSorter.countCityParcels(cityId);
+                StatisticsCollector.CityStats cityStats = statistics.getCityStats(cityId);
+                reportWriter.println("   • " + cities.getName(cityId) + ": " + count + " parcels (dispatched: " +
+                                     cityStats.getDelays().getCount() + ", average delay " +
+                                     String.format("%.2f", cityStats.getDelays().getMean()) + " ticks, returns: " +
+                                     cityStats.getReturns() + ")");
             }
             reportWriter.println("   • Most Frequently Targeted Destination: " + destinationSorter.getCityWithHighestLoad());
             reportWriter.println();
             
             // Timing and Delay Metrics
             reportWriter.println("4. Timing and Delay Metrics");
-            reportWriter.println("   • Average Processing Time: " + calculateAverageProcessingTime() + " ticks");
-            reportWriter.println("   • Parcel With Longest Delay: " + findLongestDelayParcel());
-            reportWriter.println("   • Parcels Returned More Than Once: " + countParcelsReturnedMultipleTimes());
+            StatisticsCollector.DelayStats overall = statistics.getOverall();
+            reportWriter.println("   • Average Processing Time: " + String.format("%.2f", overall.getMean()) +
+                                 " ticks (std dev " + String.format("%.2f", overall.getStdDev()) + ")");
+            reportWriter.println("   • Parcel With Longest Delay: " + (statistics.getLongestDelayParcel() != null
+                    ? statistics.getLongestDelayParcel() + " (delay: " + overall.getMaxDelay() + " ticks)" : "None"));
+            reportWriter.println("   • Parcels Returned More Than Once: " + statistics.getParcelsReturnedMultipleTimes());
+            reportWriter.println("   • Dispatch Policy: " + (config.isPriorityDispatch() ? "PRIORITY" : "FIFO"));
+            for (int priority = 1; priority <= Parcel.PRIORITY_LEVELS; priority++) {
+                StatisticsCollector.DelayStats priorityStats = statistics.getPriorityStats(priority);
+                reportWriter.println("   • Priority " + priority + ": " + priorityStats.getCount() +
+                                     " dispatched, average delay " + String.format("%.2f", priorityStats.getMean()) +
+                                     " ticks (std dev " + String.format("%.2f", priorityStats.getStdDev()) +
+                                     "), max delay " + priorityStats.getMaxDelay() + " ticks");
+            }
             reportWriter.println();
             
             // Data Structure Statistics
@@ -258,57 +1160,218 @@ public class ParcelSortXSimulation {
             reportWriter.println("   • Maximum Queue Size Observed: " + maxQueueSize);
             reportWriter.println("   • Maximum Stack Size Observed: " + maxStackSize);
             reportWriter.println("   • Final Height of BST: " + destinationSorter.getHeight());
-            reportWriter.println("   • Hash Table Load Factor: " + String.format("%.2f", parcelTracker.getLoadFactor()));
+            reportWriter.println("   • Hash Table Load Factor: " + String.format("%.2f", parcelTracker.getLoadFactor()) +
+                                 " (" + parcelTracker.getSize() + "/" + parcelTracker.getCapacity() + " slots)");
+            ColdParcelArchive cold = parcelTracker instanceof HeapParcelTracker
+                    ? ((HeapParcelTracker) parcelTracker).getColdTier() : null;
+            if (cold != null) {
+                reportWriter.println("   • Cold Tier: " + cold.size() + " finished parcels in " + cold.getBlockCount() +
+                                     " blocks (" + cold.getCompressedBytes() / 1024 + " KB compressed)");
+            }
             reportWriter.println("   • Number of Cities in BST: " + destinationSorter.getNodeCount());
-            
-        } catch (IOException e) {
-            System.err.println("Error writing report: " + e.getMessage());
         }
-    }
-    
-    private int getTotalParcelsInBST() {
-        int total = 0;
-        String[] cities = config.getCityList();
-        for (String city : cities) {
-            total += destinationSorter.countCityParcels(city);
+        report = reportBuffer.toString();
+        
+        if (reportFile != null) {
+            try (Writer fileWriter = new FileWriter(reportFile)) {
+                fileWriter.write(report);
+            } catch (IOException e) {
+                System.err.println("Error writing report: " + e.getMessage());
+            }
         }
-        return total;
     }
     
-    private double calculateAverageProcessingTime() {
-        // This would require iterating through all parcels in the tracker
-        // For simplicity, returning a placeholder
-        return totalDispatched > 0 ? (double) currentTick / totalDispatched : 0;
+    // Rebuilds a recorded run from its journal: the tracker, the sorter and the statistics are
+    // restored by applying every record, and the log (if logFile is given) and the report are
+    // rendered by the same code as in a live run. A null reportFile keeps the report in memory.
+    public static ParcelSortXSimulation replay(String journalFile, String logFile, String reportFile)
+            throws IOException {
+        EventJournal.Reader reader = new EventJournal.Reader(journalFile);
+        try {
+            Configuration config = Configuration.fromText(reader.getConfigText());
+            ParcelSortXSimulation simulation = new ParcelSortXSimulation(config, reader.getSeed(), logFile,
+                                                                         reportFile, false);
+            if (logFile == null) {
+                simulation.logLevel = Configuration.LogLevel.OFF;
+            }
+            simulation.new JournalReplay(reader).run();
+            return simulation;
+        } finally {
+            reader.close();
+        }
     }
     
-    private String findLongestDelayParcel() {
-        String longestDelayParcel = "None";
-        int maxDelay = 0;
+    // Applies journal records in order, grouping the log lines the way runTick writes them
+    private class JournalReplay {
+        final EventJournal.Reader reader;
+        final CityDictionary cities;
+        boolean inTick;
+        StringBuilder newParcels;
+        int parcelsAdded;
+        int parcelsDiscarded;
+        boolean arrivalsLogged;
+        StringBuilder sortedParcels;
         
-        // Iterate through all parcels in the tracker
-        for (int i = 1; i <= totalParcelsGenerated; i++) {
-            String parcelID = "P" + String.format("%04d", i);
-            
-            if (parcelTracker.exists(parcelID)) {
-                int delay = parcelTracker.getProcessingDelay(parcelID);
-                
-                if (delay > 0 && delay > maxDelay) { // Only consider dispatched parcels (delay > 0)
-                    maxDelay = delay;
-                    longestDelayParcel = parcelID + " (delay: " + delay + " ticks)";
+        JournalReplay(EventJournal.Reader reader) {
+            this.reader = reader;
+            this.cities = config.getCities();
+        }
+        
+        void run() throws IOException {
+            logRunHeader();
+            while (reader.next()) {
+                int cityId = reader.getCityId();
+                switch (reader.getType()) {
+                    case TICK:
+                        endTick();
+                        currentTick = reader.getTick();
+                        if (logs(Configuration.LogLevel.TICK)) {
+                            log("[" + currentTick + "]");
+                        }
+                        inTick = true;
+                        newParcels = logs(Configuration.LogLevel.PARCEL) ? new StringBuilder("New Parcels: ") : null;
+                        parcelsAdded = 0;
+                        parcelsDiscarded = 0;
+                        arrivalsLogged = false;
+                        break;
+                    case SKIP:
+                        endTick();
+                        skipIdleTicks(reader.getTick());
+                        expectTerminal(cityId);
+                        break;
+                    case ENQUEUE:
+                        int parcel = parcels.add(reader.getParcelNumber(), cityId, reader.getPriority(),
+                                                 reader.getSizeIndex(), reader.getTick());
+                        acceptParcel(parcel, newParcels, ++parcelsAdded);
+                        arrivalBuffer.enqueue(parcel);
+                        break;
+                    case DISCARD:
+                        discardParcel(reader.getParcelNumber(), cityId);
+                        parcelsDiscarded++;
+                        break;
+                    case REPROCESS:
+                        logArrivalPhase();
+                        reprocessParcel(expectParcel(returnScheduler.pop(currentTick)));
+                        break;
+                    case SORT:
+                        logArrivalPhase();
+                        int sortedParcel = expectParcel(arrivalBuffer.dequeue());
+                        destinationSorter.insertParcel(sortedParcel);
+                        parcelTracker.markSorted(sortedParcel);
+                        backlogChanged(parcels.getCityId(sortedParcel));
+                        if (!logs(Configuration.LogLevel.PARCEL)) {
+                            break;
+                        }
+                        if (sortedParcels == null) {
+                            sortedParcels = new StringBuilder("Sorted to BST: ");
+                        } else {
+                            sortedParcels.append(", ");
+                        }
+                        sortedParcels.append(parcels.getParcelID(sortedParcel));
+                        break;
+                    case ROTATE:
+                        logSortPhase();
+                        terminalRotator.advanceTerminal();
+                        expectTerminal(cityId);
+                        if (logs(Configuration.LogLevel.TICK)) {
+                            log("Rotated to: " + terminalRotator.describeActive());
+                        }
+                        break;
+                    case DISPATCH:
+                    case RETURN:
+                        logSortPhase();
+                        completeDispatch(expectParcel(destinationSorter.pollNext(cityId)), cityId,
+                                         reader.getType() == EventJournal.Type.RETURN);
+                        break;
                 }
             }
+            endTick();
+            
+            generateFinalReport();
+            shutdown();
+        }
+        
+        void logArrivalPhase() {
+            if (inTick && !arrivalsLogged) {
+                logArrivals(newParcels, parcelsAdded, parcelsDiscarded);
+                arrivalsLogged = true;
+            }
         }
         
-        return longestDelayParcel;
+        void logSortPhase() {
+            logArrivalPhase();
+            if (sortedParcels != null) {
+                log(sortedParcels.toString());
+                sortedParcels = null;
+            }
+        }
+        
+        void endTick() {
+            if (!inTick) {
+                return;
+            }
+            logSortPhase();
+            updateStatistics();
+            logTickSummary();
+            inTick = false;
+        }
+        
+        int expectParcel(int parcel) {
+            if (parcel == ParcelStore.NONE || parcels.getParcelNumber(parcel) != reader.getParcelNumber()) {
+                throw new IllegalStateException("Journal does not match the replayed state at tick " + currentTick +
+                                                ": expected " + Parcel.formatID(reader.getParcelNumber()));
+            }
+            return parcel;
+        }
+        
+        void expectTerminal(int cityId) {
+            if (cityId >= 0 && cityId != terminalRotator.getActiveTerminalId()) {
+                throw new IllegalStateException("Journal does not match the replayed state at tick " + currentTick +
+                                                ": expected active terminal " + cities.getName(cityId));
+            }
+        }
     }
     
-    private int countParcelsReturnedMultipleTimes() {
-        // This would require iterating through all parcels in the tracker
-        // For simplicity, returning a placeholder
-        return totalReturned / 3; // Rough estimate
-    }
+    public long getRandomSeed() { return randomSeed; }
+    public int getTotalParcelsGenerated() { return totalParcelsGenerated; }
+    public int getTotalDispatched() { return totalDispatched; }
+    public int getTotalReturned() { return totalReturned; }
+    public int getTotalParcelsDiscarded() { return totalParcelsDiscarded; }
+    public StatisticsCollector getStatistics() { return statistics; }
+    ParcelTracker getParcelTracker() { return parcelTracker; }
+    
+    // In-memory outputs; the log is null when it was written to a file
+    public String getLog() { return memoryLog != null ? memoryLog.toString() : null; }
+    public String getReport() { return report; }
     
+    // Usage: java ParcelSortXSimulation
+    //        java ParcelSortXSimulation --replay <journal> [report file]
+    //        java ParcelSortXSimulation --journal-to-text <journal> [log file]
+    //        java ParcelSortXSimulation --resume <snapshot>
     public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--resume")) {
+            try {
+                fromSnapshot(args[1], "log.txt").resumeSimulation();
+            } catch (IOException e) {
+                System.err.println("Error reading snapshot: " + e.getMessage());
+            }
+            return;
+        }
+        
+        if (args.length >= 2 && (args[0].equals("--replay") || args[0].equals("--journal-to-text"))) {
+            boolean toText = args[0].equals("--journal-to-text");
+            String output = args.length > 2 ? args[2] : (toText ? "journal-log.txt" : "replay-report.txt");
+            try {
+                long start = System.nanoTime();
+                replay(args[1], toText ? output : null, toText ? null : output);
+                System.out.println(String.format("Replayed %s to %s in %.2f s", args[1], output,
+                                                 (System.nanoTime() - start) / 1e9));
+            } catch (IOException e) {
+                System.err.println("Error reading journal: " + e.getMessage());
+            }
+            return;
+        }
+        
         ParcelSortXSimulation simulation = new ParcelSortXSimulation("config.txt");
         simulation.runSimulation();
     }
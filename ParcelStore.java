@@ -0,0 +1,201 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Every parcel of a run in struct-of-arrays form: one primitive column per field, and a
+// parcel is referred to by its row number (handle) in the queue, the return stack, the sorter
+// and the tracker. Accepting a parcel therefore allocates no objects, and the "P0001" ID
+// string is only formatted when a parcel is logged or reported. Rows of parcels that no
+// structure refers to any more can be released and are reused by later parcels.
+public class ParcelStore {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024;
+    public static final int NONE = -1;  // No parcel, e.g. returned by an empty queue
+
+    private static final Parcel.ParcelStatus[] STATUSES = Parcel.ParcelStatus.values();
+
+    private final CityDictionary cities;
+    private int[] numbers;        // Numeric part of the parcel ID
+    private int[] cityIds;
+    private byte[] priorities;
+    private byte[] sizes;         // Index into Parcel.SIZES
+    private int[] arrivalTicks;
+    private int[] dispatchTicks;  // -1 until dispatched
+    private short[] returnCounts;
+    private byte[] statuses;      // Parcel.ParcelStatus ordinal
+    private int[] originTicks;    // Arrival tick at the first hub; the arrival tick outside a network
+    private short[] hopCounts;    // Hubs the parcel was forwarded from
+    private int rows;             // Rows ever used; handles are below this
+    private int[] freeRows;       // Released rows, reused last in first out
+    private int freeCount;
+
+    public ParcelStore(CityDictionary cities) {
+        this(cities, DEFAULT_INITIAL_CAPACITY);
+    }
+
+    public ParcelStore(CityDictionary cities, int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+        }
+        this.cities = cities;
+        this.numbers = new int[initialCapacity];
+        this.cityIds = new int[initialCapacity];
+        this.priorities = new byte[initialCapacity];
+        this.sizes = new byte[initialCapacity];
+        this.arrivalTicks = new int[initialCapacity];
+        this.dispatchTicks = new int[initialCapacity];
+        this.returnCounts = new short[initialCapacity];
+        this.statuses = new byte[initialCapacity];
+        this.originTicks = new int[initialCapacity];
+        this.hopCounts = new short[initialCapacity];
+        this.rows = 0;
+        this.freeRows = new int[16];
+        this.freeCount = 0;
+    }
+
+    // Adds an InQueue parcel and returns its handle
+    public int add(int parcelNumber, int cityId, int priority, int sizeIndex, int arrivalTick) {
+        int handle = allocate();
+        set(handle, parcelNumber, cityId, priority, sizeIndex, arrivalTick);
+        return handle;
+    }
+
+    // Takes a row for a parcel that is filled in later with set, which other threads may do
+    // concurrently for distinct handles
+    public int allocate() {
+        if (freeCount > 0) {
+            return freeRows[--freeCount];
+        }
+        if (rows == numbers.length) {
+            grow(rows + 1);
+        }
+        return rows++;
+    }
+
+    // Makes a row available again; the handle must no longer be held anywhere
+    public void release(int handle) {
+        if (freeCount == freeRows.length) {
+            freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+        }
+        freeRows[freeCount++] = handle;
+    }
+
+    public void set(int handle, int parcelNumber, int cityId, int priority, int sizeIndex, int arrivalTick) {
+        numbers[handle] = parcelNumber;
+        cityIds[handle] = cityId;
+        priorities[handle] = (byte) priority;
+        sizes[handle] = (byte) sizeIndex;
+        arrivalTicks[handle] = arrivalTick;
+        dispatchTicks[handle] = -1;
+        returnCounts[handle] = 0;
+        statuses[handle] = (byte) Parcel.ParcelStatus.InQueue.ordinal();
+        originTicks[handle] = arrivalTick;
+        hopCounts[handle] = 0;
+    }
+
+    // For a parcel that reached this hub from another one; hops saturate at Short.MAX_VALUE
+    public void setJourney(int handle, int originTick, int hops) {
+        originTicks[handle] = originTick;
+        hopCounts[handle] = (short) Math.min(Short.MAX_VALUE, hops);
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(numbers.length * 2, minCapacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        cityIds = Arrays.copyOf(cityIds, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        arrivalTicks = Arrays.copyOf(arrivalTicks, capacity);
+        dispatchTicks = Arrays.copyOf(dispatchTicks, capacity);
+        returnCounts = Arrays.copyOf(returnCounts, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        originTicks = Arrays.copyOf(originTicks, capacity);
+        hopCounts = Arrays.copyOf(hopCounts, capacity);
+    }
+
+    public int getParcelNumber(int handle) { return numbers[handle]; }
+    public int getCityId(int handle) { return cityIds[handle]; }
+    public int getPriority(int handle) { return priorities[handle]; }
+    public int getSizeIndex(int handle) { return sizes[handle]; }
+    public int getArrivalTick(int handle) { return arrivalTicks[handle]; }
+    public int getDispatchTick(int handle) { return dispatchTicks[handle]; }
+    public int getReturnCount(int handle) { return returnCounts[handle]; }
+    public Parcel.ParcelStatus getStatus(int handle) { return STATUSES[statuses[handle]]; }
+    public int getOriginTick(int handle) { return originTicks[handle]; }
+    public int getHopCount(int handle) { return hopCounts[handle]; }
+
+    public String getParcelID(int handle) { return Parcel.formatID(numbers[handle]); }
+    public String getDestinationCity(int handle) { return cities.getName(cityIds[handle]); }
+    public String getSize(int handle) { return Parcel.SIZES[sizes[handle]]; }
+
+    public void setStatus(int handle, Parcel.ParcelStatus status) {
+        statuses[handle] = (byte) status.ordinal();
+    }
+
+    public void setDispatchTick(int handle, int dispatchTick) {
+        dispatchTicks[handle] = dispatchTick;
+    }
+
+    // Returns the new count, which saturates at Short.MAX_VALUE
+    public int incrementReturnCount(int handle) {
+        if (returnCounts[handle] < Short.MAX_VALUE) {
+            returnCounts[handle]++;
+        }
+        return returnCounts[handle];
+    }
+
+    // Parcels currently stored
+    public int size() {
+        return rows - freeCount;
+    }
+
+    public CityDictionary getCities() {
+        return cities;
+    }
+
+    // A detached Parcel object with the handle's current fields
+    public Parcel toParcel(int handle) {
+        Parcel parcel = new Parcel(getParcelID(handle), cityIds[handle], getDestinationCity(handle),
+                                   priorities[handle], getSize(handle), arrivalTicks[handle]);
+        parcel.setStatus(getStatus(handle));
+        return parcel;
+    }
+
+    // Column by column, then the released rows; handles are preserved, so the other sections
+    // can refer to them
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(rows);
+        for (int i = 0; i < rows; i++) out.writeInt(numbers[i]);
+        for (int i = 0; i < rows; i++) out.writeInt(cityIds[i]);
+        for (int i = 0; i < rows; i++) out.writeByte(priorities[i]);
+        for (int i = 0; i < rows; i++) out.writeByte(sizes[i]);
+        for (int i = 0; i < rows; i++) out.writeInt(arrivalTicks[i]);
+        for (int i = 0; i < rows; i++) out.writeInt(dispatchTicks[i]);
+        for (int i = 0; i < rows; i++) out.writeShort(returnCounts[i]);
+        for (int i = 0; i < rows; i++) out.writeByte(statuses[i]);
+        for (int i = 0; i < rows; i++) out.writeInt(originTicks[i]);
+        for (int i = 0; i < rows; i++) out.writeShort(hopCounts[i]);
+        out.writeInt(freeCount);
+        for (int i = 0; i < freeCount; i++) out.writeInt(freeRows[i]);
+    }
+
+    // Into an empty store
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        rows = in.readInt();
+        if (rows > numbers.length) {
+            grow(rows);
+        }
+        for (int i = 0; i < rows; i++) numbers[i] = in.readInt();
+        for (int i = 0; i < rows; i++) cityIds[i] = in.readInt();
+        for (int i = 0; i < rows; i++) priorities[i] = (byte) in.readByte();
+        for (int i = 0; i < rows; i++) sizes[i] = (byte) in.readByte();
+        for (int i = 0; i < rows; i++) arrivalTicks[i] = in.readInt();
+        for (int i = 0; i < rows; i++) dispatchTicks[i] = in.readInt();
+        for (int i = 0; i < rows; i++) returnCounts[i] = (short) in.readShort();
+        for (int i = 0; i < rows; i++) statuses[i] = (byte) in.readByte();
+        for (int i = 0; i < rows; i++) originTicks[i] = in.readInt();
+        for (int i = 0; i < rows; i++) hopCounts[i] = (short) in.readShort();
+        freeCount = 0;
+        for (int i = in.readInt(); i > 0; i--) {
+            release(in.readInt());
+        }
+    }
+}
@@ -1,133 +1,55 @@
-public class ParcelTracker {
-    private static final int TABLE_SIZE = 100;
-    private HashNode[] table;
-    private int size;
-    
-    private class HashNode {
-        String parcelID;
-        ParcelRecord record;
-        HashNode next;
-        
-        HashNode(String parcelID, ParcelRecord record) {
-            this.parcelID = parcelID;
-            this.record = record;
-            this.next = null;
-        }
-    }
-    
-    private class ParcelRecord {
-        Parcel.ParcelStatus status;
-        int arrivalTick;
-        int dispatchTick;
-        int returnCount;
-        String destinationCity;
-        int priority;
-        String size;
-        
-        ParcelRecord(Parcel parcel) {
-            this.status = parcel.getStatus();
-            this.arrivalTick = parcel.getArrivalTick();
-            this.dispatchTick = -1;
-            this.returnCount = 0;
-            this.destinationCity = parcel.getDestinationCity();
-            this.priority = parcel.getPriority();
-            this.size = parcel.getSize();
-        }
-    }
-    
-    public ParcelTracker() {
-        this.table = new HashNode[TABLE_SIZE];
-        this.size = 0;
-    }
-    
-    private int hash(String parcelID) {
-        int hash = 0;
-        for (char c : parcelID.toCharArray()) {
-            hash = (hash * 31 + c) % TABLE_SIZE;
-        }
-        return Math.abs(hash);
-    }
-    
-    public void insert(String parcelID, Parcel parcel) {
-        if (exists(parcelID)) {
-            return; // Avoid duplicates
-        }
-        
-        int index = hash(parcelID);
-        ParcelRecord record = new ParcelRecord(parcel);
-        HashNode newNode = new HashNode(parcelID, record);
-        
-        // Insert at the beginning of the chain
-        newNode.next = table[index];
-        table[index] = newNode;
-        size++;
-    }
-    
-    public void updateStatus(String parcelID, Parcel.ParcelStatus newStatus) {
-        HashNode node = findNode(parcelID);
-        if (node != null) {
-            node.record.status = newStatus;
-            if (newStatus == Parcel.ParcelStatus.Dispatched) {
-                // This would be set when dispatch happens
-                // node.record.dispatchTick = currentTick;
-            }
-        }
-    }
-    
-    public ParcelRecord get(String parcelID) {
-        HashNode node = findNode(parcelID);
-        return node != null ? node.record : null;
-    }
-    
-    public void incrementReturnCount(String parcelID) {
-        HashNode node = findNode(parcelID);
-        if (node != null) {
-            node.record.returnCount++;
-        }
-    }
-    
-    public boolean exists(String parcelID) {
-        return findNode(parcelID) != null;
-    }
-    
-    private HashNode findNode(String parcelID) {
-        int index = hash(parcelID);
-        HashNode current = table[index];
-        
-        while (current != null) {
-            if (current.parcelID.equals(parcelID)) {
-                return current;
+import java.io.IOException;
+
+// Status record of every parcel of a run, looked up by parcel ID. The tick loop already holds
+// a parcel's ParcelStore handle and applies each state change as one transition on it, which
+// updates status, timestamp and counter together; the ID-based operations are for lookups
+// from outside. TRACKER_STORAGE selects the implementation:
+// HeapParcelTracker indexes the store rows (and can move finished parcels to a cold tier),
+// OffHeapParcelTracker copies records into off-heap slots.
+public interface ParcelTracker {
+    int DEFAULT_INITIAL_CAPACITY = 128;
+    double DEFAULT_MAX_LOAD_FACTOR = 0.5;
+
+    // Parcel IDs are "P" followed by a zero-padded number; the number is the tracker key
+    static int parseKey(String parcelID) {
+        int key = 0;
+        for (int i = 0; i < parcelID.length(); i++) {
+            char c = parcelID.charAt(i);
+            if (c >= '0' && c <= '9') {
+                key = key * 10 + (c - '0');
             }
-            current = current.next;
-        }
-        return null;
-    }
-    
-    public int getSize() {
-        return size;
-    }
-    
-    public double getLoadFactor() {
-        return (double) size / TABLE_SIZE;
-    }
-    
-    public void setDispatchTick(String parcelID, int dispatchTick) {
-        HashNode node = findNode(parcelID);
-        if (node != null) {
-            node.record.dispatchTick = dispatchTick;
-        }
-    }
-    
-    public int getProcessingDelay(String parcelID) {
-        HashNode node = findNode(parcelID);
-        if (node != null && node.record.dispatchTick != -1) {
-            return node.record.dispatchTick - node.record.arrivalTick;
         }
-        return -1;
-    }
-    
-    public int getReturnCount(String parcelID) {
-        HashNode node = findNode(parcelID);
-        return node != null ? node.record.returnCount : 0;
-    }
-} 
\ No newline at end of file
+        return key;
+    }
+
+    // Starts tracking a parcel of the store under its parcel number; duplicates are ignored
+    void insert(int handle);
+
+    void markSorted(int handle);
+    int markReturned(int handle);  // Also counts the return; returns the new count
+
+    // Dispatched is the final state. Returns true when the tracker no longer needs the parcel's
+    // store row, which can be released once the caller has finished reading it
+    boolean markDispatched(int handle, int dispatchTick);
+
+    // A queued parcel's store row is released while the parcel is spilled to disk, and it gets a
+    // new row when it is read back; ID lookups may miss the parcel in between
+    void detach(int handle);
+    void relocate(int handle);  // The parcel's new row
+
+    void updateStatus(String parcelID, Parcel.ParcelStatus newStatus);
+    Parcel get(String parcelID);  // Detached copy of the record, or null
+    void incrementReturnCount(String parcelID);
+    boolean exists(String parcelID);
+    void setDispatchTick(String parcelID, int dispatchTick);
+    int getProcessingDelay(String parcelID);  // -1 until dispatched
+    int getReturnCount(String parcelID);
+
+    int getSize();
+    int getCapacity();  // Slots, used and free
+    double getLoadFactor();
+
+    void writeSnapshot(SimulationSnapshot.Output out) throws IOException;
+    void readSnapshot(SimulationSnapshot.Input in) throws IOException;  // Replaces the contents
+    void close() throws IOException;
+}
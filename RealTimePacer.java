@@ -0,0 +1,46 @@
+import java.util.concurrent.locks.LockSupport;
+
+// Wall-clock pacing for REAL_TIME_TICK_MS. Tick k is due (k - 1) tick lengths after the first
+// tick; a tick that is late runs at once and later ticks keep their due times, so the schedule
+// does not drift. Records how late each tick started (jitter) and the ticks that were still
+// running when the next one was due (overruns).
+public class RealTimePacer {
+    private final long tickNanos;
+    private final LatencyHistogram jitter;
+    private long start;
+    private long due;
+    private int ticks;
+    private int overruns;
+
+    public RealTimePacer(int tickMillis) {
+        this.tickNanos = tickMillis * 1_000_000L;
+        this.jitter = new LatencyHistogram();
+        this.start = -1;
+    }
+
+    // Waits until the tick is due; the first call starts the clock
+    public void awaitTick(int tick) {
+        long now = System.nanoTime();
+        if (start < 0) {
+            start = now - (tick - 1) * tickNanos;
+        }
+        due = start + (tick - 1) * tickNanos;
+        while (now < due) {
+            LockSupport.parkNanos(due - now);
+            now = System.nanoTime();
+        }
+        jitter.record(now - due);
+    }
+
+    public void endTick() {
+        ticks++;
+        if (System.nanoTime() - due > tickNanos) {
+            overruns++;
+        }
+    }
+
+    public long getTickMillis() { return tickNanos / 1_000_000L; }
+    public LatencyHistogram getJitter() { return jitter; }
+    public int getTicks() { return ticks; }
+    public int getOverruns() { return overruns; }
+}
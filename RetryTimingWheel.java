@@ -0,0 +1,225 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+// Hashed timing wheel for returned parcels. A parcel pushed with return count n is due
+// backoff[n - 1] ticks later (the last backoff applies to higher counts) and is linked into the
+// slot for its due tick; delays longer than the wheel wait in their slot for further turns. As
+// pop advances the wheel to the current tick, the due parcels of each passed slot move to a
+// ready list in due tick order, and every ready parcel can be popped, not just the newest.
+// Nodes live in parallel int arrays with a free list, so pushes allocate nothing once the
+// pool has grown to the peak number of waiting parcels.
+public class RetryTimingWheel implements ReturnScheduler {
+    public static final int DEFAULT_SLOTS = 256;
+    private static final int NIL = -1;
+
+    private final ParcelStore parcels;
+    private final int[] backoff;
+    private final int[] slotHeads;
+    private final int[] slotTails;
+    private final int mask;
+    private int cursor;       // Slots up to this tick have been collected
+
+    // Node pool
+    private int[] nodeParcels;
+    private int[] nodeDueTicks;
+    private int[] nodeNext;
+    private int freeHead;
+
+    private int readyHead;    // Eligible parcels, oldest due tick first
+    private int readyTail;
+    private int size;
+
+    public RetryTimingWheel(ParcelStore parcels, int[] backoff, int slots) {
+        if (backoff.length == 0) {
+            throw new IllegalArgumentException("At least one retry backoff is required");
+        }
+        for (int ticks : backoff) {
+            if (ticks < 1) {
+                throw new IllegalArgumentException("Retry backoff must be at least 1 tick: " + ticks);
+            }
+        }
+        int capacity = 1;
+        while (capacity < slots) {
+            capacity <<= 1;
+        }
+        this.parcels = parcels;
+        this.backoff = backoff.clone();
+        this.slotHeads = new int[capacity];
+        this.slotTails = new int[capacity];
+        Arrays.fill(slotHeads, NIL);
+        this.mask = capacity - 1;
+        this.nodeParcels = new int[16];
+        this.nodeDueTicks = new int[16];
+        this.nodeNext = new int[16];
+        for (int i = 0; i < 15; i++) {
+            nodeNext[i] = i + 1;
+        }
+        nodeNext[15] = NIL;
+        this.freeHead = 0;
+        this.readyHead = NIL;
+        this.readyTail = NIL;
+    }
+
+    public void push(int parcel, int currentTick) {
+        int returns = parcels.getReturnCount(parcel);
+        int delay = backoff[Math.max(0, Math.min(returns, backoff.length) - 1)];
+        schedule(parcel, currentTick + delay);
+    }
+
+    private void schedule(int parcel, int dueTick) {
+        int node = allocateNode(parcel, dueTick);
+        int slot = dueTick & mask;
+        if (slotHeads[slot] == NIL) {
+            slotHeads[slot] = node;
+        } else {
+            nodeNext[slotTails[slot]] = node;
+        }
+        slotTails[slot] = node;
+        size++;
+    }
+
+    private void appendReady(int node) {
+        nodeNext[node] = NIL;
+        if (readyHead == NIL) {
+            readyHead = node;
+        } else {
+            nodeNext[readyTail] = node;
+        }
+        readyTail = node;
+    }
+
+    private int allocateNode(int parcel, int dueTick) {
+        if (freeHead == NIL) {
+            int oldCapacity = nodeParcels.length;
+            int capacity = oldCapacity * 2;
+            nodeParcels = Arrays.copyOf(nodeParcels, capacity);
+            nodeDueTicks = Arrays.copyOf(nodeDueTicks, capacity);
+            nodeNext = Arrays.copyOf(nodeNext, capacity);
+            for (int i = oldCapacity; i < capacity - 1; i++) {
+                nodeNext[i] = i + 1;
+            }
+            nodeNext[capacity - 1] = NIL;
+            freeHead = oldCapacity;
+        }
+        int node = freeHead;
+        freeHead = nodeNext[node];
+        nodeParcels[node] = parcel;
+        nodeDueTicks[node] = dueTick;
+        nodeNext[node] = NIL;
+        return node;
+    }
+
+    // Visits the slots of the ticks after the cursor (at most one full turn) and moves parcels
+    // due by currentTick to the ready list
+    private void advance(int currentTick) {
+        if (currentTick <= cursor) {
+            return;
+        }
+        int steps = (int) Math.min((long) currentTick - cursor, slotHeads.length);
+        for (int i = 1; i <= steps; i++) {
+            collect((cursor + i) & mask, currentTick);
+        }
+        cursor = currentTick;
+    }
+
+    private void collect(int slot, int currentTick) {
+        int previous = NIL;
+        int node = slotHeads[slot];
+        while (node != NIL) {
+            int next = nodeNext[node];
+            if (nodeDueTicks[node] <= currentTick) {
+                if (previous == NIL) {
+                    slotHeads[slot] = next;
+                } else {
+                    nodeNext[previous] = next;
+                }
+                if (slotTails[slot] == node) {
+                    slotTails[slot] = previous;
+                }
+                appendReady(node);
+            } else {
+                previous = node;
+            }
+            node = next;
+        }
+    }
+
+    public int pop(int currentTick) {
+        advance(currentTick);
+        if (readyHead == NIL) {
+            return ParcelStore.NONE;
+        }
+        int node = readyHead;
+        readyHead = nodeNext[node];
+        if (readyHead == NIL) {
+            readyTail = NIL;
+        }
+        nodeNext[node] = freeHead;
+        freeHead = node;
+        size--;
+        return nodeParcels[node];
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int nextEligibleTick(int currentTick) {
+        advance(currentTick);
+        if (readyHead != NIL) {
+            return currentTick + 1;
+        }
+        // The first slot within one turn holding a parcel due at that very tick, else the
+        // smallest due tick of the parcels waiting for a later turn
+        for (int tick = currentTick + 1; tick <= currentTick + slotHeads.length; tick++) {
+            for (int node = slotHeads[tick & mask]; node != NIL; node = nodeNext[node]) {
+                if (nodeDueTicks[node] == tick) {
+                    return tick;
+                }
+            }
+        }
+        int earliest = Integer.MAX_VALUE;
+        for (int head : slotHeads) {
+            for (int node = head; node != NIL; node = nodeNext[node]) {
+                earliest = Math.min(earliest, nodeDueTicks[node]);
+            }
+        }
+        return earliest;
+    }
+
+    // Cursor, then the ready parcels in order and the waiting ones slot by slot from the cursor,
+    // each as (handle, due tick)
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(cursor);
+        out.writeInt(size);
+        for (int node = readyHead; node != NIL; node = nodeNext[node]) {
+            out.writeInt(nodeParcels[node]);
+            out.writeInt(nodeDueTicks[node]);
+        }
+        for (int i = 1; i <= slotHeads.length; i++) {
+            for (int node = slotHeads[(cursor + i) & mask]; node != NIL; node = nodeNext[node]) {
+                out.writeInt(nodeParcels[node]);
+                out.writeInt(nodeDueTicks[node]);
+            }
+        }
+    }
+
+    // Parcels due by the cursor were on the ready list, the others were waiting in their slots
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        cursor = in.readInt();
+        for (int count = in.readInt(); count > 0; count--) {
+            int parcel = in.readInt();
+            int dueTick = in.readInt();
+            if (dueTick <= cursor) {
+                appendReady(allocateNode(parcel, dueTick));
+                size++;
+            } else {
+                schedule(parcel, dueTick);
+            }
+        }
+    }
+}
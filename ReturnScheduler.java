@@ -0,0 +1,15 @@
+import java.io.IOException;
+
+// Holds returned parcels until they may be sorted again. Parcels are ParcelStore handles;
+// pop returns ParcelStore.NONE when no parcel is eligible at currentTick. RETURN_SCHEDULER
+// selects the implementation: ReturnStack (LIFO, eligible one tick after the push) or
+// RetryTimingWheel (FIFO by due tick, with a backoff per return count).
+public interface ReturnScheduler {
+    void push(int parcel, int currentTick);  // After the parcel's return count was incremented
+    int pop(int currentTick);
+    boolean isEmpty();
+    int size();
+    int nextEligibleTick(int currentTick);  // Earliest later tick at which pop can succeed; needs !isEmpty()
+    void writeSnapshot(SimulationSnapshot.Output out) throws IOException;
+    void readSnapshot(SimulationSnapshot.Input in) throws IOException;  // Into an empty scheduler
+}
@@ -1,59 +1,80 @@
-public class ReturnStack {
-    private StackNode top;
+import java.io.IOException;
+import java.util.Arrays;
+
+// LIFO of returned parcels as ParcelStore handles, with the tick each one was pushed in.
+// Two growable arrays replace one node object per push. Only the top is checked, so a parcel
+// pushed in the current tick holds back older ones until the next tick.
+public class ReturnStack implements ReturnScheduler {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] parcels;
+    private int[] pushTicks;  // Tick when each parcel was pushed to stack
     private int size;
-    
-    private class StackNode {
-        Parcel parcel;
-        int pushTick;  // Tick when parcel was pushed to stack
-        StackNode next;
-        
-        StackNode(Parcel parcel, int pushTick) {
-            this.parcel = parcel;
-            this.pushTick = pushTick;
-            this.next = null;
-        }
-    }
-    
+
     public ReturnStack() {
-        this.top = null;
+        this.parcels = new int[INITIAL_CAPACITY];
+        this.pushTicks = new int[INITIAL_CAPACITY];
         this.size = 0;
     }
-    
-    public void push(Parcel parcel, int currentTick) {
-        StackNode newNode = new StackNode(parcel, currentTick);
-        newNode.next = top;
-        top = newNode;
+
+    public void push(int parcel, int currentTick) {
+        if (size == parcels.length) {
+            parcels = Arrays.copyOf(parcels, size * 2);
+            pushTicks = Arrays.copyOf(pushTicks, size * 2);
+        }
+        parcels[size] = parcel;
+        pushTicks[size] = currentTick;
         size++;
     }
-    
-    public Parcel pop(int currentTick) {
+
+    public int pop(int currentTick) {
         if (isEmpty()) {
-            return null;
+            return ParcelStore.NONE;
         }
-        
+
         // Only pop if parcel was pushed in a previous tick
-        if (top.pushTick >= currentTick) {
-            return null; // Parcel was pushed in current tick, cannot pop yet
+        if (pushTicks[size - 1] >= currentTick) {
+            return ParcelStore.NONE; // Parcel was pushed in current tick, cannot pop yet
         }
-        
-        Parcel parcel = top.parcel;
-        top = top.next;
+
         size--;
-        return parcel;
+        return parcels[size];
     }
-    
-    public Parcel peek() {
+
+    public int peek() {
         if (isEmpty()) {
-            return null;
+            return ParcelStore.NONE;
         }
-        return top.parcel;
+        return parcels[size - 1];
+    }
+
+    // Every parcel on the stack was pushed by currentTick
+    public int nextEligibleTick(int currentTick) {
+        return currentTick + 1;
     }
-    
+
     public boolean isEmpty() {
-        return top == null;
+        return size == 0;
     }
-    
+
     public int size() {
         return size;
     }
-} 
\ No newline at end of file
+
+    // Written bottom to top so that reading pushes the parcels back in their original order
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeInt(parcels[i]);
+            out.writeInt(pushTicks[i]);
+        }
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            int parcel = in.readInt();
+            push(parcel, in.readInt());
+        }
+    }
+}
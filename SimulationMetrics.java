@@ -0,0 +1,84 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters and gauges published while the simulation runs. The simulation thread only
+// increments LongAdders and stores gauges into volatile fields, so JMX and HTTP readers on
+// other threads never take a lock or slow the tick loop down.
+public class SimulationMetrics implements SimulationMetricsMXBean {
+    public static final String OBJECT_NAME = "ParcelSortX:type=Simulation";
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder returned = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+
+    private final CityDictionary cities;
+    private final AtomicIntegerArray cityBacklog;
+    private volatile int currentTick;
+    private volatile double tickRate;
+    private volatile int queueDepth;
+    private volatile int stackDepth;
+    private volatile double trackerLoadFactor;
+
+    // Tick rate window, simulation thread only
+    private long windowStartNanos;
+    private int windowStartTick;
+
+    // Counters start from the given totals so that a resumed run continues them
+    public SimulationMetrics(CityDictionary cities, int tick, int generated, int dispatched, int returned,
+                             int discarded) {
+        this.cities = cities;
+        this.cityBacklog = new AtomicIntegerArray(cities.size());
+        this.generated.add(generated);
+        this.dispatched.add(dispatched);
+        this.returned.add(returned);
+        this.discarded.add(discarded);
+        this.currentTick = tick;
+        this.windowStartTick = tick;
+        this.windowStartNanos = System.nanoTime();
+    }
+
+    public void recordGenerated() { generated.increment(); }
+    public void recordDispatched() { dispatched.increment(); }
+    public void recordReturned() { returned.increment(); }
+    public void recordDiscarded() { discarded.increment(); }
+
+    // Publishes the gauges at the end of a tick
+    public void updateTick(int tick, int queueSize, int stackSize, ParcelTracker tracker, DestinationSorter sorter) {
+        currentTick = tick;
+        queueDepth = queueSize;
+        stackDepth = stackSize;
+        trackerLoadFactor = tracker.getLoadFactor();
+        for (int id = 0; id < cities.size(); id++) {
+            cityBacklog.lazySet(id, sorter.countCityParcels(id));
+        }
+
+        long now = System.nanoTime();
+        if (now - windowStartNanos >= RATE_WINDOW_NANOS) {
+            tickRate = (tick - windowStartTick) * 1e9 / (now - windowStartNanos);
+            windowStartNanos = now;
+            windowStartTick = tick;
+        }
+    }
+
+    public long getParcelsGenerated() { return generated.sum(); }
+    public long getParcelsDispatched() { return dispatched.sum(); }
+    public long getParcelsReturned() { return returned.sum(); }
+    public long getParcelsDiscarded() { return discarded.sum(); }
+    public int getCurrentTick() { return currentTick; }
+    public double getTickRate() { return tickRate; }
+    public int getQueueDepth() { return queueDepth; }
+    public int getStackDepth() { return stackDepth; }
+    public double getTrackerLoadFactor() { return trackerLoadFactor; }
+
+    public Map<String, Integer> getCityBacklog() {
+        Map<String, Integer> backlog = new LinkedHashMap<>();
+        for (int id = 0; id < cities.size(); id++) {
+            backlog.put(cities.getName(id), cityBacklog.get(id));
+        }
+        return backlog;
+    }
+}
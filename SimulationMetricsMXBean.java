@@ -0,0 +1,15 @@
+import java.util.Map;
+
+// Live metrics of a running simulation, registered as ParcelSortX:type=Simulation
+public interface SimulationMetricsMXBean {
+    long getParcelsGenerated();
+    long getParcelsDispatched();
+    long getParcelsReturned();
+    long getParcelsDiscarded();
+    int getCurrentTick();
+    double getTickRate();               // Simulated ticks per second over the last second or so
+    int getQueueDepth();
+    int getStackDepth();
+    double getTrackerLoadFactor();
+    Map<String, Integer> getCityBacklog();  // Parcels waiting in the BST per city
+}
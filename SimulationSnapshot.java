@@ -0,0 +1,171 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Versioned binary snapshot of the whole simulation state. Every structure writes and reads
+// its own section through Output and Input, which store each distinct string (city names)
+// once and refer to it by index afterwards.
+//
+// File layout: int magic, int version, long seed, int config text length, config text (UTF-8),
+// then the sections in the order ParcelSortXSimulation writes them.
+public class SimulationSnapshot {
+    private static final int MAGIC = 0x50535853;  // "PSXS"
+    private static final int VERSION = 10;
+
+    public static class Output {
+        private final DataOutputStream data;
+        private final Map<String, Integer> strings;
+
+        public Output(OutputStream stream, long seed, String configText) throws IOException {
+            this.data = new DataOutputStream(new BufferedOutputStream(stream));
+            this.strings = new HashMap<>();
+            byte[] text = configText.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeLong(seed);
+            data.writeInt(text.length);
+            data.write(text);
+        }
+
+        public void writeInt(int value) throws IOException { data.writeInt(value); }
+        public void writeLong(long value) throws IOException { data.writeLong(value); }
+        public void writeDouble(double value) throws IOException { data.writeDouble(value); }
+        public void writeShort(int value) throws IOException { data.writeShort(value); }
+        public void writeByte(int value) throws IOException { data.writeByte(value); }
+        public void writeBoolean(boolean value) throws IOException { data.writeBoolean(value); }
+
+        // Index of an earlier occurrence, or -1 followed by the string; null is written as -2
+        public void writeString(String value) throws IOException {
+            if (value == null) {
+                data.writeInt(-2);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                data.writeInt(index);
+            } else {
+                data.writeInt(-1);
+                data.writeUTF(value);
+                strings.put(value, strings.size());
+            }
+        }
+
+        public void flush() throws IOException {
+            data.flush();
+        }
+    }
+
+    public static class Input {
+        private final DataInputStream data;
+        private final List<String> strings;
+        private final long seed;
+        private final String configText;
+
+        public Input(InputStream stream) throws IOException {
+            this.data = new DataInputStream(new BufferedInputStream(stream));
+            this.strings = new ArrayList<>();
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a ParcelSortX snapshot");
+            }
+            int version = data.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version: " + version);
+            }
+            this.seed = data.readLong();
+            byte[] text = new byte[data.readInt()];
+            data.readFully(text);
+            this.configText = new String(text, StandardCharsets.UTF_8);
+        }
+
+        public long getSeed() { return seed; }
+        public String getConfigText() { return configText; }
+
+        public int readInt() throws IOException { return data.readInt(); }
+        public long readLong() throws IOException { return data.readLong(); }
+        public double readDouble() throws IOException { return data.readDouble(); }
+        public int readShort() throws IOException { return data.readShort(); }
+        public int readByte() throws IOException { return data.readByte(); }
+        public boolean readBoolean() throws IOException { return data.readBoolean(); }
+
+        public String readString() throws IOException {
+            int index = data.readInt();
+            if (index == -2) {
+                return null;
+            }
+            if (index == -1) {
+                String value = data.readUTF();
+                strings.add(value);
+                return value;
+            }
+            return strings.get(index);
+        }
+
+        public void close() throws IOException {
+            data.close();
+        }
+    }
+
+    // Writes encoded snapshots on a background thread. Each snapshot goes to a temporary file
+    // that is synced and then renamed over the target, so the last complete checkpoint survives
+    // a crash in the middle of a write.
+    public static class Writer {
+        private final Path path;
+        private final Path tempPath;
+        private final ExecutorService executor;
+        private Future<?> pending;
+
+        public Writer(String filename) {
+            this.path = Paths.get(filename);
+            this.tempPath = Paths.get(filename + ".tmp");
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // True while the previous snapshot is still being written
+        public boolean isBusy() {
+            return pending != null && !pending.isDone();
+        }
+
+        public void submit(byte[] snapshot) {
+            pending = executor.submit(() -> {
+                try {
+                    write(snapshot);
+                } catch (IOException e) {
+                    System.err.println("Error writing snapshot: " + e.getMessage());
+                }
+            });
+        }
+
+        private void write(byte[] snapshot) throws IOException {
+            try (FileOutputStream out = new FileOutputStream(tempPath.toFile())) {
+                out.write(snapshot);
+                out.getFD().sync();
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        // Waits for the last snapshot to reach the disk
+        public void close() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
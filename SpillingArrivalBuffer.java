@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+// ArrivalBuffer with an overflow tier: once the in-memory ring is full, further parcels
+// are appended to memory-mapped segment files on disk and moved back into the ring in
+// FIFO order as space frees up. Parcels are only discarded when the spill limit is reached.
+// A spilled parcel's fields are written to the segment and its ParcelStore row is released,
+// so a burst grows the files rather than the heap; it gets a new row when it is read back.
+public class SpillingArrivalBuffer implements ArrivalQueue {
+    public static final int DEFAULT_SEGMENT_BYTES = 1 << 20;
+    // int parcel number, int city id, int arrival tick, int origin tick, short hop count, byte
+    // priority, byte size index; queued parcels have no returns or dispatch tick yet
+    private static final int RECORD_BYTES = 20;
+
+    private final ArrivalBuffer memory;
+    private final ParcelStore parcels;
+    private final ParcelTracker tracker;
+    private final Path directory;
+    private final int segmentBytes;
+    private final long spillLimit;
+
+    private final ArrayDeque<Segment> segments;  // Oldest segment first
+    private int nextSegmentId;
+    private long spilledCount;   // Parcels currently on disk
+    private long totalSpilled;
+    private long totalRefilled;
+    private long maxSpilled;
+
+    // One append-only segment file; records never span segments
+    private static class Segment {
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int readPosition;
+        int writePosition;
+
+        Segment(Path path, int size) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            this.readPosition = 0;
+            this.writePosition = 0;
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Parcels must be in the tracker before they are enqueued
+    public SpillingArrivalBuffer(int capacity, ParcelStore parcels, ParcelTracker tracker, Path directory,
+                                 long spillLimit, int segmentBytes) throws IOException {
+        if (spillLimit <= 0 || segmentBytes < RECORD_BYTES) {
+            throw new IllegalArgumentException("Spill limit must be positive and segments must hold a record");
+        }
+        this.memory = new ArrivalBuffer(capacity);
+        this.parcels = parcels;
+        this.tracker = tracker;
+        // A private directory per buffer so parallel runs never share segment files
+        this.directory = Files.createTempDirectory(Files.createDirectories(directory), "queue-");
+        this.spillLimit = spillLimit;
+        this.segmentBytes = segmentBytes;
+        this.segments = new ArrayDeque<>();
+    }
+
+    public void enqueue(int parcel) {
+        // Once anything is on disk new parcels must follow it to keep FIFO order
+        if (spilledCount == 0 && !memory.isFull()) {
+            memory.enqueue(parcel);
+            return;
+        }
+        if (spilledCount >= spillLimit) {
+            System.out.println("WARNING: Spill limit reached - discarding parcel handle " + parcel);
+            return;
+        }
+
+        try {
+            spill(parcels.getParcelNumber(parcel), parcels.getCityId(parcel), parcels.getArrivalTick(parcel),
+                  parcels.getOriginTick(parcel), parcels.getHopCount(parcel), parcels.getPriority(parcel),
+                  parcels.getSizeIndex(parcel));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing spill file", e);
+        }
+        tracker.detach(parcel);
+        parcels.release(parcel);
+    }
+
+    public int dequeue() {
+        int parcel = memory.dequeue();
+        refill();
+        return parcel;
+    }
+
+    public int dequeueBatch(int[] target, int maxCount) {
+        int limit = Math.min(maxCount, target.length);
+        int moved = memory.dequeueBatch(target, limit);
+        refill();
+        // Parcels refilled from disk can satisfy the rest of the request
+        while (moved < limit && !memory.isEmpty()) {
+            target[moved++] = memory.dequeue();
+            refill();
+        }
+        return moved;
+    }
+
+    public int peek() {
+        return memory.peek();
+    }
+
+    public boolean isFull() {
+        return memory.isFull() && spilledCount >= spillLimit;
+    }
+
+    public boolean isEmpty() {
+        return memory.isEmpty() && spilledCount == 0;
+    }
+
+    // Parcels held in memory and on disk
+    public int size() {
+        return (int) Math.min(Integer.MAX_VALUE, memory.size() + spilledCount);
+    }
+
+    public int getCapacity() {
+        return memory.getCapacity();
+    }
+
+    public int getMemorySize() {
+        return memory.size();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount;
+    }
+
+    public long getTotalSpilled() {
+        return totalSpilled;
+    }
+
+    public long getTotalRefilled() {
+        return totalRefilled;
+    }
+
+    public long getMaxSpilled() {
+        return maxSpilled;
+    }
+
+    // Handles of the parcels in memory, then the spilled records in FIFO order, then the spill
+    // counters
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeInt(memory.size());
+        for (int i = 0; i < memory.size(); i++) {
+            out.writeInt(memory.get(i));
+        }
+        out.writeLong(spilledCount);
+        for (Segment segment : segments) {
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.position(segment.readPosition);
+            while (buffer.position() < segment.writePosition) {
+                out.writeInt(buffer.getInt());
+                out.writeInt(buffer.getInt());
+                out.writeInt(buffer.getInt());
+                out.writeInt(buffer.getInt());
+                out.writeShort(buffer.getShort());
+                out.writeByte(buffer.get());
+                out.writeByte(buffer.get());
+            }
+        }
+        out.writeLong(totalSpilled);
+        out.writeLong(totalRefilled);
+        out.writeLong(maxSpilled);
+    }
+
+    // The rows of the parcels in memory are restored with the store; spilled records go back to disk
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        for (int i = in.readInt(); i > 0; i--) {
+            memory.enqueue(in.readInt());
+        }
+        for (long i = in.readLong(); i > 0; i--) {
+            spill(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readShort(), in.readByte(),
+                  in.readByte());
+        }
+        totalSpilled = in.readLong();
+        totalRefilled = in.readLong();
+        maxSpilled = in.readLong();
+    }
+
+    private void spill(int parcelNumber, int cityId, int arrivalTick, int originTick, int hops, int priority,
+                       int sizeIndex) throws IOException {
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.writePosition + RECORD_BYTES > segmentBytes) {
+            tail = new Segment(directory.resolve("spill-" + (nextSegmentId++) + ".seg"), segmentBytes);
+            segments.addLast(tail);
+        }
+
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.position(tail.writePosition);
+        buffer.putInt(parcelNumber);
+        buffer.putInt(cityId);
+        buffer.putInt(arrivalTick);
+        buffer.putInt(originTick);
+        buffer.putShort((short) hops);
+        buffer.put((byte) priority);
+        buffer.put((byte) sizeIndex);
+        tail.writePosition = buffer.position();
+
+        spilledCount++;
+        totalSpilled++;
+        maxSpilled = Math.max(maxSpilled, spilledCount);
+    }
+
+    // Moves spilled parcels back into the ring while there is room
+    private void refill() {
+        try {
+            while (spilledCount > 0 && !memory.isFull()) {
+                memory.enqueue(readSpilled());
+                spilledCount--;
+                totalRefilled++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading spill file", e);
+        }
+    }
+
+    private int readSpilled() throws IOException {
+        Segment head = segments.peekFirst();
+        while (head.readPosition == head.writePosition) {
+            // Fully consumed segments are deleted
+            segments.pollFirst().delete();
+            head = segments.peekFirst();
+        }
+
+        MappedByteBuffer buffer = head.buffer;
+        buffer.position(head.readPosition);
+        int parcelNumber = buffer.getInt();
+        int cityId = buffer.getInt();
+        int arrivalTick = buffer.getInt();
+        int originTick = buffer.getInt();
+        int hops = buffer.getShort();
+        int priority = buffer.get();
+        int sizeIndex = buffer.get();
+        head.readPosition = buffer.position();
+
+        if (head.readPosition == head.writePosition && segments.size() > 1) {
+            segments.pollFirst().delete();
+        }
+        int parcel = parcels.add(parcelNumber, cityId, priority, sizeIndex, arrivalTick);
+        parcels.setJourney(parcel, originTick, hops);
+        tracker.relocate(parcel);
+        return parcel;
+    }
+
+    // Deletes all segment files and the buffer's directory
+    public void close() throws IOException {
+        while (!segments.isEmpty()) {
+            segments.pollFirst().delete();
+        }
+        spilledCount = 0;
+        Files.deleteIfExists(directory);
+    }
+}
@@ -0,0 +1,143 @@
+import java.io.IOException;
+
+// Streaming statistics updated on every dispatch and return, so the final report
+// is exact and costs O(cities + priority levels) regardless of how many parcels ran.
+public class StatisticsCollector {
+    // Running count / mean / variance (Welford) and maximum of a delay series
+    public static class DelayStats {
+        private long count;
+        private double mean;
+        private double sumSquaredDiffs;
+        private int maxDelay;
+
+        void add(int delay) {
+            count++;
+            double diff = delay - mean;
+            mean += diff / count;
+            sumSquaredDiffs += diff * (delay - mean);
+            maxDelay = Math.max(maxDelay, delay);
+        }
+
+        public long getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getVariance() { return count > 1 ? sumSquaredDiffs / (count - 1) : 0; }
+        public double getStdDev() { return Math.sqrt(getVariance()); }
+        public int getMaxDelay() { return maxDelay; }
+
+        void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+            out.writeLong(count);
+            out.writeDouble(mean);
+            out.writeDouble(sumSquaredDiffs);
+            out.writeInt(maxDelay);
+        }
+
+        void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+            count = in.readLong();
+            mean = in.readDouble();
+            sumSquaredDiffs = in.readDouble();
+            maxDelay = in.readInt();
+        }
+    }
+
+    public static class CityStats {
+        private final DelayStats delays = new DelayStats();
+        private long returns;
+
+        public DelayStats getDelays() { return delays; }
+        public long getReturns() { return returns; }
+    }
+
+    private final DelayStats overall;
+    private final DelayStats[] byPriority;
+    private final CityDictionary cities;
+    private final CityStats[] byCity;  // By CityDictionary id
+    private int longestDelayParcel;  // Parcel number, -1 until something is dispatched
+    private long parcelsReturnedMultipleTimes;
+
+    public StatisticsCollector(CityDictionary cities) {
+        this.overall = new DelayStats();
+        this.byPriority = new DelayStats[Parcel.PRIORITY_LEVELS];
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = new DelayStats();
+        }
+        this.cities = cities;
+        this.byCity = new CityStats[cities.size()];
+        for (int i = 0; i < byCity.length; i++) {
+            byCity[i] = new CityStats();
+        }
+        this.longestDelayParcel = -1;
+        this.parcelsReturnedMultipleTimes = 0;
+    }
+
+    public void recordDispatch(ParcelStore parcels, int parcel, int dispatchTick) {
+        int delay = dispatchTick - parcels.getArrivalTick(parcel);
+        if (longestDelayParcel < 0 || delay > overall.getMaxDelay()) {
+            longestDelayParcel = parcels.getParcelNumber(parcel);
+        }
+        overall.add(delay);
+        byPriority[Parcel.priorityIndex(parcels.getPriority(parcel))].add(delay);
+        byCity[parcels.getCityId(parcel)].delays.add(delay);
+    }
+
+    // After the parcel's return count has been incremented for this return
+    public void recordReturn(ParcelStore parcels, int parcel) {
+        byCity[parcels.getCityId(parcel)].returns++;
+        if (parcels.getReturnCount(parcel) == 2) {
+            parcelsReturnedMultipleTimes++;
+        }
+    }
+
+    public DelayStats getOverall() {
+        return overall;
+    }
+
+    public DelayStats getPriorityStats(int priority) {
+        return byPriority[Parcel.priorityIndex(priority)];
+    }
+
+    public CityStats getCityStats(int cityId) {
+        return byCity[cityId];
+    }
+
+    public CityStats getCityStats(String city) {
+        return byCity[cities.getId(city)];
+    }
+
+    // Parcel ID of the longest dispatch delay, or null if nothing was dispatched
+    public String getLongestDelayParcel() {
+        return longestDelayParcel >= 0 ? Parcel.formatID(longestDelayParcel) : null;
+    }
+
+    public long getParcelsReturnedMultipleTimes() {
+        return parcelsReturnedMultipleTimes;
+    }
+
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        overall.writeSnapshot(out);
+        for (DelayStats stats : byPriority) {
+            stats.writeSnapshot(out);
+        }
+        out.writeInt(byCity.length);
+        for (CityStats stats : byCity) {
+            stats.delays.writeSnapshot(out);
+            out.writeLong(stats.returns);
+        }
+        out.writeInt(longestDelayParcel);
+        out.writeLong(parcelsReturnedMultipleTimes);
+    }
+
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        overall.readSnapshot(in);
+        for (DelayStats stats : byPriority) {
+            stats.readSnapshot(in);
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            CityStats stats = byCity[i];
+            stats.delays.readSnapshot(in);
+            stats.returns = in.readLong();
+        }
+        longestDelayParcel = in.readInt();
+        parcelsReturnedMultipleTimes = in.readLong();
+    }
+}
@@ -1,37 +1,66 @@
+import java.io.IOException;
+
+// Ring of the CITY_LIST terminals and the docks serving some of them. With ROUND_ROBIN the
+// docks serve consecutive terminals of the ring, and a rotation moves them on by the number of
+// docks. With BACKLOG a rotation gives the docks to the terminals with the most parcels waiting
+// in the sorter, read off a BacklogHeap that the simulation updates as parcels are sorted and
+// dispatched.
 public class TerminalRotator {
     private TerminalNode head;
-    private TerminalNode currentActiveTerminal;
+    private TerminalNode currentActiveTerminal;  // First dock's terminal in ROUND_ROBIN
     private int size;
+    private final int docks;
+    private CityDictionary cities;
+    private BacklogHeap backlog;        // null in ROUND_ROBIN
+    private final boolean backlogPolicy;
+    private int[] activeIds;            // Terminal of each dock
+    private int activeCount;
+    private boolean[] activeByCity;
     
     private class TerminalNode {
         String cityName;
+        int cityId;
         TerminalNode next;
         
-        TerminalNode(String cityName) {
+        TerminalNode(String cityName, int cityId) {
             this.cityName = cityName;
+            this.cityId = cityId;
             this.next = null;
         }
     }
     
     public TerminalRotator() {
+        this(1, false);
+    }
+    
+    public TerminalRotator(int docks, boolean backlogPolicy) {
+        if (docks < 1) {
+            throw new IllegalArgumentException("At least one dock is required: " + docks);
+        }
         this.head = null;
         this.currentActiveTerminal = null;
         this.size = 0;
+        this.docks = docks;
+        this.backlogPolicy = backlogPolicy;
+        this.activeIds = new int[0];
+        this.activeCount = 0;
+        this.activeByCity = new boolean[0];
     }
     
-    public void initializeFromCityList(String[] cityArray) {
-        if (cityArray == null || cityArray.length == 0) {
+    // One terminal per CITY_LIST entry, in list order
+    public void initializeFromCityList(CityDictionary cities) {
+        if (cities.getListSize() == 0) {
             return;
         }
         
         // Create the first node
-        head = new TerminalNode(cityArray[0]);
+        head = new TerminalNode(cities.getName(cities.getListId(0)), cities.getListId(0));
         TerminalNode current = head;
         size = 1;
         
         // Create remaining nodes
-        for (int i = 1; i < cityArray.length; i++) {
-            TerminalNode newNode = new TerminalNode(cityArray[i]);
+        for (int i = 1; i < cities.getListSize(); i++) {
+            TerminalNode newNode = new TerminalNode(cities.getName(cities.getListId(i)), cities.getListId(i));
             current.next = newNode;
             current = newNode;
             size++;
@@ -42,16 +71,123 @@ public class TerminalRotator {
         
         // Set initial active terminal
         currentActiveTerminal = head;
+        
+        // The docks start on the first terminals of the list under either policy
+        this.cities = cities;
+        this.activeIds = new int[Math.min(docks, size)];
+        this.activeByCity = new boolean[cities.size()];
+        if (backlogPolicy) {
+            backlog = new BacklogHeap(cities.size());
+            for (int i = 0; i < cities.getListSize(); i++) {
+                backlog.add(cities.getListId(i));
+            }
+        }
+        if (backlog != null) {
+            assignByBacklog();  // All backlogs are empty, so the lowest city ids win
+        } else {
+            assignRoundRobin();
+        }
     }
     
+    // One rotation
     public void advanceTerminal() {
-        if (currentActiveTerminal != null) {
+        if (currentActiveTerminal == null) {
+            return;
+        }
+        if (backlog != null) {
+            assignByBacklog();
+            return;
+        }
+        for (int i = 0; i < activeIds.length; i++) {
             currentActiveTerminal = currentActiveTerminal.next;
         }
+        assignRoundRobin();
+    }
+    
+    // Several rotations at once, while the backlogs do not change
+    public void advanceTerminals(long rotations) {
+        if (rotations <= 0 || currentActiveTerminal == null) {
+            return;
+        }
+        if (backlog != null) {
+            assignByBacklog();  // Unchanged backlogs give the same docks however often they rotate
+            return;
+        }
+        for (long i = rotations % size * activeIds.length % size; i > 0; i--) {
+            currentActiveTerminal = currentActiveTerminal.next;
+        }
+        assignRoundRobin();
+    }
+    
+    private void assignRoundRobin() {
+        clearActive();
+        TerminalNode node = currentActiveTerminal;
+        for (int i = 0; i < activeIds.length; i++) {
+            setActive(i, node.cityId);
+            node = node.next;
+        }
+        activeCount = activeIds.length;
+    }
+    
+    private void assignByBacklog() {
+        clearActive();
+        activeCount = backlog.top(activeIds, activeIds.length);
+        for (int i = 0; i < activeCount; i++) {
+            setActive(i, activeIds[i]);
+        }
+    }
+    
+    private void clearActive() {
+        for (int i = 0; i < activeCount; i++) {
+            activeByCity[activeIds[i]] = false;
+        }
+    }
+    
+    private void setActive(int dock, int cityId) {
+        activeIds[dock] = cityId;
+        activeByCity[cityId] = true;
+    }
+    
+    // The simulation reports every change of a terminal's sorter backlog; ignored in ROUND_ROBIN
+    public void updateBacklog(int cityId, int count) {
+        if (backlog != null) {
+            backlog.update(cityId, count);
+        }
+    }
+    
+    public boolean isBacklogPolicy() {
+        return backlogPolicy;
     }
     
     public String getActiveTerminal() {
-        return currentActiveTerminal != null ? currentActiveTerminal.cityName : null;
+        return activeCount > 0 ? cities.getName(activeIds[0]) : null;
+    }
+    
+    // CityDictionary id of the first dock's terminal, or -1 without terminals
+    public int getActiveTerminalId() {
+        return activeCount > 0 ? activeIds[0] : -1;
+    }
+    
+    public int getActiveCount() {
+        return activeCount;
+    }
+    
+    public int getActiveTerminalId(int dock) {
+        return activeIds[dock];
+    }
+    
+    public boolean isActive(int cityId) {
+        return activeByCity[cityId];
+    }
+    
+    // Names of the docks' terminals, comma-separated
+    public String describeActive() {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < activeCount; i++) {
+            if (i > 0) names.append(", ");
+            names.append(cities.getName(activeIds[i]));
+        }
+        return names.toString();
     }
     
     public void printTerminalOrder() {
@@ -65,7 +201,7 @@ public class TerminalRotator {
         int count = 0;
         
         do {
-            String marker = (current == currentActiveTerminal) ? " [ACTIVE]" : "";
+            String marker = isActive(current.cityId) ? " [ACTIVE]" : "";
             System.out.println((count + 1) + ". " + current.cityName + marker);
             current = current.next;
             count++;
@@ -75,4 +211,31 @@ public class TerminalRotator {
     public int getSize() {
         return size;
     }
+    
+    // The ring position, then the docks' terminals
+    public void writeSnapshot(SimulationSnapshot.Output out) throws IOException {
+        out.writeString(currentActiveTerminal != null ? currentActiveTerminal.cityName : null);
+        out.writeInt(activeCount);
+        for (int i = 0; i < activeCount; i++) {
+            out.writeInt(activeIds[i]);
+        }
+    }
+    
+    // Rotates the initialized ring to the terminal that was first and restores the docks; the
+    // backlogs are reported again once the sorter has been restored
+    public void readSnapshot(SimulationSnapshot.Input in) throws IOException {
+        String first = in.readString();
+        for (int i = 0; i < size && first != null && !first.equals(currentActiveTerminal.cityName); i++) {
+            currentActiveTerminal = currentActiveTerminal.next;
+        }
+        int count = in.readInt();
+        if (count > activeIds.length) {
+            throw new IOException("Snapshot has more active docks than its configuration");
+        }
+        clearActive();
+        for (int i = 0; i < count; i++) {
+            setActive(i, in.readInt());
+        }
+        activeCount = count;
+    }
 } 
\ No newline at end of file
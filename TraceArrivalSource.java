@@ -0,0 +1,322 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Streams arrivals from a CSV scan log with rows "id,destination,priority,size,arrivalTick",
+// sorted by arrival tick. A background thread reads the file through a large NIO buffer and
+// parses the bytes directly into reusable column batches, so parsing overlaps the simulation,
+// memory use is independent of the file size, and no per-row strings are created (destinations
+// are matched byte-wise against CITY_LIST). Lines without a numeric arrival tick, such as a
+// header, and rows for cities outside CITY_LIST are skipped; rows earlier than the current
+// tick arrive immediately.
+public class TraceArrivalSource implements ArrivalSource {
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+    private static final int BATCH_ROWS = 8192;
+    private static final int READ_AHEAD_BATCHES = 4;
+
+    // Parsed rows in column form; batches cycle between the reader thread and the simulation
+    private static class Batch {
+        final int[] parcelNumbers = new int[BATCH_ROWS];
+        final int[] cityIds = new int[BATCH_ROWS];
+        final byte[] priorities = new byte[BATCH_ROWS];
+        final byte[] sizes = new byte[BATCH_ROWS];
+        final int[] ticks = new int[BATCH_ROWS];
+        final long[] endOffsets = new long[BATCH_ROWS];  // File offset just after each row
+        int count;
+        boolean last;
+    }
+
+    // Open-addressing table from UTF-8 bytes to CityDictionary ids, so matching a destination
+    // needs no String
+    private static class CityTable {
+        private final byte[][] names;
+        private final int[] ids;
+
+        CityTable(CityDictionary cities) {
+            int capacity = Integer.highestOneBit(Math.max(1, cities.size()) * 4);
+            this.names = new byte[capacity][];
+            this.ids = new int[capacity];
+            for (int id = 0; id < cities.size(); id++) {
+                byte[] name = cities.getName(id).getBytes(StandardCharsets.UTF_8);
+                int index = find(name, 0, name.length);
+                names[index] = name;
+                ids[index] = id;
+            }
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int h = 0x811C9DC5;
+            for (int i = from; i < to; i++) {
+                h = (h ^ bytes[i]) * 0x01000193;
+            }
+            return h ^ (h >>> 16);
+        }
+
+        private int find(byte[] bytes, int from, int to) {
+            int mask = names.length - 1;
+            int index = hash(bytes, from, to) & mask;
+            while (names[index] != null && !matches(names[index], bytes, from, to)) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private static boolean matches(byte[] name, byte[] bytes, int from, int to) {
+            if (name.length != to - from) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (name[i] != bytes[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Id of the configured city with these bytes, or -1
+        int lookup(byte[] bytes, int from, int to) {
+            int index = find(bytes, from, to);
+            return names[index] != null ? ids[index] : -1;
+        }
+    }
+
+    private final FileChannel channel;
+    private final long startOffset;
+    private final CityTable cityTable;
+    private final BlockingQueue<Batch> filled;
+    private final BlockingQueue<Batch> free;
+    private final Thread readerThread;
+    private volatile IOException readError;
+    private volatile long unknownCityRows;  // Written by the reader thread only
+
+    // Simulation-thread state
+    private Batch current;
+    private int index;
+    private int polled;  // Row of the last successful poll in current
+    private long position;
+
+    public TraceArrivalSource(String filename, CityDictionary cities) throws IOException {
+        this(filename, cities, 0);
+    }
+
+    // startOffset is a value returned by getPosition, to continue a resumed run
+    public TraceArrivalSource(String filename, CityDictionary cities, long startOffset) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        this.startOffset = startOffset;
+        this.position = startOffset;
+        this.cityTable = new CityTable(cities);
+        this.filled = new ArrayBlockingQueue<>(READ_AHEAD_BATCHES + 1);
+        this.free = new ArrayBlockingQueue<>(READ_AHEAD_BATCHES + 1);
+        for (int i = 0; i < READ_AHEAD_BATCHES + 1; i++) {
+            free.add(new Batch());
+        }
+
+        this.readerThread = new Thread(this::readLoop, "trace-reader");
+        this.readerThread.setDaemon(true);
+        this.readerThread.start();
+    }
+
+    public int peekNextTick() {
+        return nextBatch() ? current.ticks[index] : Integer.MAX_VALUE;
+    }
+
+    public boolean poll(int currentTick) {
+        if (!nextBatch() || current.ticks[index] > currentTick) {
+            return false;
+        }
+        polled = index;
+        position = current.endOffsets[index];
+        index++;
+        return true;
+    }
+
+    public int getParcelNumber() { return current.parcelNumbers[polled]; }
+    public int getCityId() { return current.cityIds[polled]; }
+    public int getPriority() { return current.priorities[polled]; }
+    public int getSizeIndex() { return current.sizes[polled]; }
+
+    public long getPosition() {
+        return position;
+    }
+
+    // Makes sure current has an unread row; false once the file is exhausted
+    private boolean nextBatch() {
+        while (current == null || index == current.count) {
+            if (current != null) {
+                if (current.last) {
+                    return false;
+                }
+                current.count = 0;
+                free.add(current);
+            }
+            try {
+                current = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for trace rows", e);
+            }
+            index = 0;
+            if (current.last && readError != null) {
+                throw new UncheckedIOException("Error reading arrival trace", readError);
+            }
+        }
+        return true;
+    }
+
+    private void readLoop() {
+        Batch batch = null;
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            byte[] bytes = buffer.array();
+            long bufferOffset = startOffset;  // File offset of buffer index 0
+            channel.position(startOffset);
+            batch = free.take();
+            boolean endOfFile = false;
+
+            while (!endOfFile) {
+                endOfFile = channel.read(buffer) < 0;
+                buffer.flip();
+                int lineStart = 0;
+                int limit = buffer.limit();
+                for (int i = 0; i < limit; i++) {
+                    if (bytes[i] == '\n') {
+                        if (parseRow(bytes, lineStart, i, batch)) {
+                            batch.endOffsets[batch.count++] = bufferOffset + i + 1;
+                            if (batch.count == BATCH_ROWS) {
+                                filled.put(batch);
+                                batch = free.take();
+                            }
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (endOfFile && lineStart < limit && parseRow(bytes, lineStart, limit, batch)) {
+                    // Last line without a newline
+                    batch.endOffsets[batch.count++] = bufferOffset + limit;
+                    if (batch.count == BATCH_ROWS) {
+                        filled.put(batch);
+                        batch = free.take();
+                    }
+                }
+
+                buffer.position(lineStart);
+                buffer.compact();
+                bufferOffset += lineStart;
+                if (!buffer.hasRemaining()) {
+                    throw new IOException("Trace line longer than " + READ_BUFFER_BYTES + " bytes");
+                }
+            }
+        } catch (IOException e) {
+            readError = e;
+        } catch (InterruptedException e) {
+            return; // Closed
+        }
+
+        try {
+            if (batch == null) {
+                batch = free.take();
+            }
+            batch.last = true;
+            filled.put(batch);
+        } catch (InterruptedException e) {
+            // Closed while handing over the last batch
+        }
+    }
+
+    // Parses one line into the next batch row without creating strings; false for lines to skip
+    private boolean parseRow(byte[] bytes, int from, int to, Batch batch) {
+        int row = batch.count;
+        int field = 0;
+        int start = from;
+        long tick = -1;
+        for (int i = from; i <= to && field < 5; i++) {
+            if (i < to && bytes[i] != ',') {
+                continue;
+            }
+            int a = start;
+            int b = i;
+            while (a < b && isBlank(bytes[a])) {
+                a++;
+            }
+            while (b > a && isBlank(bytes[b - 1])) {
+                b--;
+            }
+            switch (field) {
+                case 0:
+                    batch.parcelNumbers[row] = (int) parseDigits(bytes, a, b);
+                    break;
+                case 1:
+                    batch.cityIds[row] = cityTable.lookup(bytes, a, b);
+                    break;
+                case 2:
+                    batch.priorities[row] = (byte) Math.max(0, parseDigits(bytes, a, b));
+                    break;
+                case 3:
+                    batch.sizes[row] = (byte) sizeIndex(bytes, a, b);
+                    break;
+                case 4:
+                    tick = parseDigits(bytes, a, b);
+                    break;
+            }
+            field++;
+            start = i + 1;
+        }
+        if (field < 5 || tick < 0) {
+            return false;
+        }
+        if (batch.cityIds[row] < 0) {
+            unknownCityRows++;
+            return false;
+        }
+        batch.ticks[row] = (int) Math.min(Integer.MAX_VALUE - 1, tick);
+        return true;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    // Value of the digits in the field (other characters such as an ID prefix are ignored), -1 if none
+    private static long parseDigits(byte[] bytes, int from, int to) {
+        long value = -1;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (b - '0');
+            }
+        }
+        return value;
+    }
+
+    private static int sizeIndex(byte[] bytes, int from, int to) {
+        for (int s = 0; s < Parcel.SIZES.length; s++) {
+            String size = Parcel.SIZES[s];
+            if (size.length() != to - from) {
+                continue;
+            }
+            int i = 0;
+            while (i < size.length() && Character.toLowerCase(size.charAt(i)) ==
+                                        Character.toLowerCase((char) bytes[from + i])) {
+                i++;
+            }
+            if (i == size.length()) {
+                return s;
+            }
+        }
+        return 0;
+    }
+
+    public void close() throws IOException {
+        readerThread.interrupt();
+        channel.close();
+        if (unknownCityRows > 0) {
+            System.err.println("Skipped " + unknownCityRows + " trace rows with destinations outside CITY_LIST");
+        }
+    }
+}
@@ -0,0 +1,319 @@
+import java.io.*;
+
+import parcelsortx.jmh.Workload;
+
+// The cases of the JMH suite in benchmarks/parcelsortx/jmh, created by name. Each case builds its
+// own ParcelStore of parcelCount parcels cycling through cityCount cities.
+public class ParcelSortXWorkloads {
+
+    // setup() builds the parcels and calls init(); prepare() runs untimed before every iterate()
+    private abstract static class Case implements Workload {
+        int parcelCount;
+        int cityCount;
+        ParcelStore store;
+        int[] parcels;  // Handles in store
+        String[] cities;
+
+        public void setup(int parcelCount, int cityCount) throws IOException {
+            this.parcelCount = parcelCount;
+            this.cityCount = cityCount;
+            this.cities = createCities(cityCount);
+            this.store = new ParcelStore(new CityDictionary(cities), Math.max(1, parcelCount));
+            this.parcels = createParcels(store, parcelCount);
+            init();
+        }
+
+        void init() throws IOException {}
+        public void prepare() {}
+        public void tearDown() {}
+    }
+
+    public static Workload create(String name) {
+        switch (name) {
+            case "ArrivalBuffer.enqueue+dequeue":
+                return new Case() {
+                    ArrivalBuffer buffer;
+                    void init() { buffer = new ArrivalBuffer(parcelCount); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            buffer.enqueue(parcel);
+                        }
+                        while (buffer.dequeue() != ParcelStore.NONE) { }
+                        return 2L * parcelCount;
+                    }
+                };
+
+            case "ReturnStack.push+pop":
+                return new Case() {
+                    ReturnStack stack;
+                    void init() { stack = new ReturnStack(); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            stack.push(parcel, 0);
+                        }
+                        while (stack.pop(1) != ParcelStore.NONE) { }
+                        return 2L * parcelCount;
+                    }
+                };
+
+            case "RetryTimingWheel.push+pop":
+                return new Case() {
+                    RetryTimingWheel wheel;
+                    int tick;
+                    void init() { wheel = new RetryTimingWheel(store, new int[] {1}, RetryTimingWheel.DEFAULT_SLOTS); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            wheel.push(parcel, tick);
+                        }
+                        tick++;
+                        while (wheel.pop(tick) != ParcelStore.NONE) { }
+                        return 2L * parcelCount;
+                    }
+                };
+
+            case "HeapParcelTracker.insert":
+                return new Case() {
+                    ParcelTracker tracker;
+                    public void prepare() { tracker = new HeapParcelTracker(store); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            tracker.insert(parcel);
+                        }
+                        return parcelCount;
+                    }
+                    public void tearDown() { tracker = null; }
+                };
+
+            case "HeapParcelTracker.find":
+                return new TrackerFind() {
+                    ParcelTracker createTracker() { return new HeapParcelTracker(store); }
+                };
+
+            case "OffHeapParcelTracker.insert":
+                return new Case() {
+                    ParcelTracker tracker;
+                    public void prepare() { tracker = new OffHeapParcelTracker(store); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            tracker.insert(parcel);
+                        }
+                        return parcelCount;
+                    }
+                    public void tearDown() { tracker = null; }
+                };
+
+            case "OffHeapParcelTracker.find":
+                return new TrackerFind() {
+                    ParcelTracker createTracker() { return new OffHeapParcelTracker(store); }
+                };
+
+            case "DestinationSorter.insertParcel":
+                return new Case() {
+                    DestinationSorter sorter;
+                    public void prepare() { sorter = new DestinationSorter(store); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            sorter.insertParcel(parcel);
+                        }
+                        return parcelCount;
+                    }
+                    public void tearDown() { sorter = null; }
+                };
+
+            case "DestinationSorter.getCityParcels":
+                return new Case() {
+                    DestinationSorter sorter;
+                    long copied;
+                    void init() { sorter = filledSorter(store, parcels); }
+                    public long iterate() {
+                        for (int cityId = 0; cityId < cities.length; cityId++) {
+                            copied += sorter.getCityParcels(cityId).size();
+                        }
+                        return cityCount;
+                    }
+                    public void tearDown() { sorter = null; }
+                };
+
+            case "DestinationSorter.removeParcel":
+                return new Case() {
+                    DestinationSorter sorter;
+                    String[] ids;
+                    void init() { ids = parcelIDs(store, parcels); }
+                    public void prepare() { sorter = filledSorter(store, parcels); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            sorter.removeParcel(store.getDestinationCity(parcel), ids[parcel]);
+                        }
+                        return parcelCount;
+                    }
+                    public void tearDown() { sorter = null; ids = null; }
+                };
+
+            case "DestinationSorter.pollNext":
+                return new Case() {
+                    DestinationSorter sorter;
+                    public void prepare() { sorter = filledSorter(store, parcels); }
+                    public long iterate() {
+                        for (int parcel : parcels) {
+                            sorter.pollNext(store.getCityId(parcel));
+                        }
+                        return parcelCount;
+                    }
+                    public void tearDown() { sorter = null; }
+                };
+
+            case "TerminalRotator.advanceTerminal":
+                return new Case() {
+                    TerminalRotator rotator;
+                    void init() {
+                        rotator = new TerminalRotator();
+                        rotator.initializeFromCityList(new CityDictionary(cities));
+                    }
+                    public long iterate() {
+                        for (int i = 0; i < parcelCount; i++) {
+                            rotator.advanceTerminal();
+                        }
+                        return parcelCount;
+                    }
+                };
+
+            // One backlog change per parcel and a rotation to the 4 largest backlogs every 16
+            case "TerminalRotator.updateBacklog":
+                return new Case() {
+                    TerminalRotator rotator;
+                    int[] backlogs;
+                    void init() {
+                        rotator = new TerminalRotator(4, true);
+                        rotator.initializeFromCityList(new CityDictionary(cities));
+                        backlogs = new int[cities.length];
+                    }
+                    public long iterate() {
+                        for (int i = 0; i < parcelCount; i++) {
+                            int cityId = store.getCityId(parcels[i]);
+                            rotator.updateBacklog(cityId, ++backlogs[cityId]);
+                            if ((i & 15) == 15) {
+                                rotator.advanceTerminal();
+                            }
+                        }
+                        return parcelCount;
+                    }
+                };
+
+            case "ParcelSortXSimulation.tick":
+                return new SimulationTick();
+
+            // Headless: with logging off and dispatched parcels leaving the store, a steady-state
+            // tick should allocate nothing
+            case "ParcelSortXSimulation.tick (LOG_LEVEL=OFF)":
+                return new SimulationTick("LOG_LEVEL=OFF", "TRACKER_STORAGE=OFF_HEAP");
+
+            default:
+                throw new IllegalArgumentException("Unknown benchmark workload: " + name);
+        }
+    }
+
+    // Looks every parcel up by its ID string
+    private abstract static class TrackerFind extends Case {
+        ParcelTracker tracker;
+        String[] ids;
+        long found;
+
+        abstract ParcelTracker createTracker();
+
+        void init() {
+            tracker = createTracker();
+            ids = parcelIDs(store, parcels);
+            for (int parcel : parcels) {
+                tracker.insert(parcel);
+            }
+        }
+
+        public long iterate() {
+            for (String id : ids) {
+                found += tracker.getReturnCount(id);
+            }
+            return parcelCount;
+        }
+
+        public void tearDown() { tracker = null; ids = null; }
+    }
+
+    // One whole simulation tick per iterate() on the given cities, with extra configuration lines
+    private static class SimulationTick extends Case {
+        final String[] extraConfig;
+        ParcelSortXSimulation simulation;
+        File configFile;
+        File logFile;
+
+        SimulationTick(String... extraConfig) {
+            this.extraConfig = extraConfig;
+        }
+
+        void init() throws IOException {
+            configFile = File.createTempFile("bench-config", ".txt");
+            logFile = File.createTempFile("bench-log", ".txt");
+            try (PrintWriter writer = new PrintWriter(new FileWriter(configFile))) {
+                writer.println("MAX_TICKS=" + Integer.MAX_VALUE);
+                writer.println("QUEUE_CAPACITY=30");
+                writer.println("TERMINAL_ROTATION_INTERVAL=5");
+                writer.println("PARCEL_PER_TICK_MIN=1");
+                writer.println("PARCEL_PER_TICK_MAX=3");
+                writer.println("MISROUTING_RATE=0.1");
+                writer.println("RANDOM_SEED=1");
+                writer.println("LOG_CONSOLE_ECHO=false");
+                writer.println("CITY_LIST=" + String.join(",", cities));
+                for (String line : extraConfig) {
+                    writer.println(line);
+                }
+            }
+            simulation = new ParcelSortXSimulation(configFile.getPath(), logFile.getPath());
+        }
+
+        public long iterate() {
+            simulation.runTick();
+            return 1;
+        }
+
+        public void tearDown() {
+            simulation.shutdown();
+            configFile.delete();
+            logFile.delete();
+        }
+    }
+
+    private static DestinationSorter filledSorter(ParcelStore store, int[] parcels) {
+        DestinationSorter sorter = new DestinationSorter(store);
+        for (int parcel : parcels) {
+            sorter.insertParcel(parcel);
+        }
+        return sorter;
+    }
+
+    // ID strings of the parcels, for the benchmarks of lookups by ID
+    private static String[] parcelIDs(ParcelStore store, int[] parcels) {
+        String[] ids = new String[parcels.length];
+        for (int i = 0; i < parcels.length; i++) {
+            ids[i] = store.getParcelID(parcels[i]);
+        }
+        return ids;
+    }
+
+    private static String[] createCities(int cityCount) {
+        String[] cities = new String[cityCount];
+        for (int i = 0; i < cityCount; i++) {
+            cities[i] = "City" + i;
+        }
+        return cities;
+    }
+
+    // Parcels cycle through the cities with a stride so that insertion order is not sorted
+    private static int[] createParcels(ParcelStore store, int parcelCount) {
+        int cityCount = store.getCities().size();
+        int[] parcels = new int[parcelCount];
+        for (int i = 0; i < parcelCount; i++) {
+            int cityId = (int) ((i * 7919L) % cityCount);
+            parcels[i] = store.add(i + 1, cityId, i % Parcel.PRIORITY_LEVELS + 1, i % Parcel.SIZES.length, i);
+        }
+        return parcels;
+    }
+}
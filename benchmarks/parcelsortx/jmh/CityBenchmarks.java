@@ -0,0 +1,106 @@
+package parcelsortx.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The per-city structures, over every combination of parcel and city counts. Every invocation
+// passes over all parcelCount parcels, except getCityParcels, which copies out every city once.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CityBenchmarks {
+
+    public abstract static class ParcelsAndCities extends WorkloadState {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int parcelCount;
+
+        @Param({"5", "100", "10000"})
+        public int cityCount;
+
+        ParcelsAndCities(String name) {
+            super(name);
+        }
+
+        int parcelCount() { return parcelCount; }
+        int cityCount() { return cityCount; }
+    }
+
+    // Starts every invocation from an empty (insertParcel) or a full (removeParcel, pollNext) sorter.
+    // -prof gc also counts the allocation of this untimed refill in B/op
+    public abstract static class FreshSorter extends ParcelsAndCities {
+        FreshSorter(String name) {
+            super(name);
+        }
+
+        @Setup(Level.Invocation)
+        public void prepare() {
+            workload.prepare();
+        }
+    }
+
+    public static class InsertParcelState extends FreshSorter {
+        public InsertParcelState() { super("DestinationSorter.insertParcel"); }
+    }
+
+    public static class GetCityParcelsState extends ParcelsAndCities {
+        public GetCityParcelsState() { super("DestinationSorter.getCityParcels"); }
+    }
+
+    public static class RemoveParcelState extends FreshSorter {
+        public RemoveParcelState() { super("DestinationSorter.removeParcel"); }
+    }
+
+    public static class PollNextState extends FreshSorter {
+        public PollNextState() { super("DestinationSorter.pollNext"); }
+    }
+
+    public static class AdvanceTerminalState extends ParcelsAndCities {
+        public AdvanceTerminalState() { super("TerminalRotator.advanceTerminal"); }
+    }
+
+    public static class UpdateBacklogState extends ParcelsAndCities {
+        public UpdateBacklogState() { super("TerminalRotator.updateBacklog"); }
+    }
+
+    @Benchmark
+    public void sorterInsertParcel(InsertParcelState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void sorterGetCityParcels(GetCityParcelsState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void sorterRemoveParcel(RemoveParcelState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void sorterPollNext(PollNextState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void rotatorAdvanceTerminal(AdvanceTerminalState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void rotatorUpdateBacklog(UpdateBacklogState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+}
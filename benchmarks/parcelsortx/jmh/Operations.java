@@ -0,0 +1,21 @@
+package parcelsortx.jmh;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// One invocation of a data-structure benchmark covers every parcel, so the primary score is in
+// passes per second. This counter reports the rate of single operations (parcels inserted,
+// looked up, ...) next to it as the "operations" secondary result.
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class Operations {
+    public long operations;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        operations = 0;
+    }
+}
@@ -0,0 +1,112 @@
+package parcelsortx.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The queues, stacks and trackers, whose cost does not depend on the number of cities. Every
+// invocation passes over all parcelCount parcels, which cycle through 5 cities.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParcelBenchmarks {
+
+    public abstract static class Parcels extends WorkloadState {
+        @Param({"1000", "10000", "100000", "1000000", "10000000"})
+        public int parcelCount;
+
+        Parcels(String name) {
+            super(name);
+        }
+
+        int parcelCount() { return parcelCount; }
+        int cityCount() { return 5; }
+    }
+
+    // Starts every invocation from an empty structure. -prof gc also counts the allocation of this
+    // untimed reset in B/op
+    public abstract static class FreshParcels extends Parcels {
+        FreshParcels(String name) {
+            super(name);
+        }
+
+        @Setup(Level.Invocation)
+        public void prepare() {
+            workload.prepare();
+        }
+    }
+
+    public static class ArrivalBufferState extends Parcels {
+        public ArrivalBufferState() { super("ArrivalBuffer.enqueue+dequeue"); }
+    }
+
+    public static class ReturnStackState extends Parcels {
+        public ReturnStackState() { super("ReturnStack.push+pop"); }
+    }
+
+    public static class RetryTimingWheelState extends Parcels {
+        public RetryTimingWheelState() { super("RetryTimingWheel.push+pop"); }
+    }
+
+    public static class HeapTrackerInsertState extends FreshParcels {
+        public HeapTrackerInsertState() { super("HeapParcelTracker.insert"); }
+    }
+
+    public static class HeapTrackerFindState extends Parcels {
+        public HeapTrackerFindState() { super("HeapParcelTracker.find"); }
+    }
+
+    public static class OffHeapTrackerInsertState extends FreshParcels {
+        public OffHeapTrackerInsertState() { super("OffHeapParcelTracker.insert"); }
+    }
+
+    public static class OffHeapTrackerFindState extends Parcels {
+        public OffHeapTrackerFindState() { super("OffHeapParcelTracker.find"); }
+    }
+
+    @Benchmark
+    public void arrivalBufferEnqueueDequeue(ArrivalBufferState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void returnStackPushPop(ReturnStackState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void retryTimingWheelPushPop(RetryTimingWheelState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void heapTrackerInsert(HeapTrackerInsertState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void heapTrackerFind(HeapTrackerFindState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void offHeapTrackerInsert(OffHeapTrackerInsertState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+
+    @Benchmark
+    public void offHeapTrackerFind(OffHeapTrackerFindState state, Operations operations) {
+        operations.operations += state.workload.iterate();
+    }
+}
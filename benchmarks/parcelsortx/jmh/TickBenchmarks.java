@@ -0,0 +1,55 @@
+package parcelsortx.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One whole simulation tick per invocation, with 1-3 new parcels per tick. The simulation keeps
+// running across iterations, so later iterations see the backlogs built up by earlier ones.
+// Run with -prof gc to see the allocation per tick; the headless steady state is held to zero by
+// HeadlessTickAllocationTest.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TickBenchmarks {
+
+    public abstract static class Cities extends WorkloadState {
+        @Param({"5", "100", "10000"})
+        public int cityCount;
+
+        Cities(String name) {
+            super(name);
+        }
+
+        int parcelCount() { return 0; }
+        int cityCount() { return cityCount; }
+    }
+
+    public static class DefaultTickState extends Cities {
+        public DefaultTickState() { super("ParcelSortXSimulation.tick"); }
+    }
+
+    // LOG_LEVEL=OFF and TRACKER_STORAGE=OFF_HEAP
+    public static class HeadlessTickState extends Cities {
+        public HeadlessTickState() { super("ParcelSortXSimulation.tick (LOG_LEVEL=OFF)"); }
+    }
+
+    @Benchmark
+    public long tick(DefaultTickState state) {
+        return state.workload.iterate();
+    }
+
+    @Benchmark
+    public long headlessTick(HeadlessTickState state) {
+        return state.workload.iterate();
+    }
+}
@@ -0,0 +1,29 @@
+package parcelsortx.jmh;
+
+import java.io.IOException;
+
+// One benchmark case. The cases are implemented in ParcelSortXWorkloads, next to the simulation
+// classes in the default package: JMH rejects benchmark classes in the default package, and a
+// named package cannot import from it, so the @Benchmark methods reach the cases through this
+// interface.
+public interface Workload {
+    // Once per trial: builds parcelCount parcels cycling through cityCount cities
+    void setup(int parcelCount, int cityCount) throws IOException;
+
+    // Untimed, before every invocation of iterate()
+    void prepare();
+
+    // The measured work; returns the number of operations performed
+    long iterate();
+
+    void tearDown();
+
+    static Workload create(String name) {
+        try {
+            return (Workload) Class.forName("ParcelSortXWorkloads").getMethod("create", String.class)
+                                   .invoke(null, name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create benchmark workload " + name, e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package parcelsortx.jmh;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Holds one named Workload for a trial. Subclasses declare the @Param fields the case depends on
+// and name the case in their public no-argument constructor, which JMH requires.
+@State(Scope.Thread)
+public abstract class WorkloadState {
+    private final String name;
+    Workload workload;
+
+    protected WorkloadState(String name) {
+        this.name = name;
+    }
+
+    abstract int parcelCount();
+    abstract int cityCount();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workload = Workload.create(name);
+        workload.setup(parcelCount(), cityCount());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workload.tearDown();
+        workload = null;
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.*;
+import java.lang.management.ManagementFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Runs a headless tick on 5 cities with enough dispatch capacity that every city's backlog
+// stays bounded, so once warm-up has grown the queues, lines and stacks to their working size
+// a tick must allocate nothing. Ticks at which the off-heap tracker maps a new chunk (a small
+// buffer handle per 65536 parcels) are not counted. A window of ticks can still catch a
+// one-off allocation made by the JVM rather than the tick (a rare new backlog peak, or code
+// running uncompiled again after a deoptimization), so the test only fails when every one of
+// WINDOWS windows allocated; an allocation in the tick itself recurs in all of them.
+public class HeadlessTickAllocationTest {
+    private static final int WARMUP_TICKS = 100_000;
+    private static final int WINDOW_TICKS = 100_000;
+    private static final int WINDOWS = 3;
+
+    @Test
+    public void steadyStateHeadlessTickAllocatesNothing() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean
+                   && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported(),
+                   "thread allocation counters are not supported");
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        File configFile = File.createTempFile("alloc-config", ".txt");
+        File logFile = File.createTempFile("alloc-log", ".txt");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(configFile))) {
+            writer.println("MAX_TICKS=" + Integer.MAX_VALUE);
+            writer.println("QUEUE_CAPACITY=30");
+            writer.println("TERMINAL_ROTATION_INTERVAL=5");
+            writer.println("PARCEL_PER_TICK_MIN=1");
+            writer.println("PARCEL_PER_TICK_MAX=3");
+            writer.println("MISROUTING_RATE=0.1");
+            writer.println("RANDOM_SEED=1");
+            writer.println("LOG_CONSOLE_ECHO=false");
+            writer.println("CITY_LIST=City0,City1,City2,City3,City4");
+            writer.println("LOG_LEVEL=OFF");
+            writer.println("TRACKER_STORAGE=OFF_HEAP");
+            writer.println("DISPATCH_RATE=3");
+        }
+
+        ParcelSortXSimulation simulation = new ParcelSortXSimulation(configFile.getPath(), logFile.getPath());
+        try {
+            ParcelTracker tracker = simulation.getParcelTracker();
+            for (int i = 0; i < WARMUP_TICKS; i++) {
+                simulation.runTick();
+            }
+            long allocated = 0;
+            int allocatingTicks = 0;
+            for (int window = 0; window < WINDOWS; window++) {
+                allocated = 0;
+                allocatingTicks = 0;
+                for (int i = 0; i < WINDOW_TICKS; i++) {
+                    int capacity = tracker.getCapacity();
+                    long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+                    simulation.runTick();
+                    long bytes = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+                    if (bytes > 0 && tracker.getCapacity() == capacity) {
+                        allocated += bytes;
+                        allocatingTicks++;
+                    }
+                }
+                if (allocated == 0) {
+                    return;
+                }
+            }
+            assertEquals(0, allocated, allocatingTicks + " of " + WINDOW_TICKS +
+                                       " headless ticks allocated in every window");
+        } finally {
+            simulation.shutdown();
+            configFile.delete();
+            logFile.delete();
+        }
+    }
+}